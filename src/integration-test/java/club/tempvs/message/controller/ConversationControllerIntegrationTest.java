@@ -10,6 +10,8 @@ import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
 import club.tempvs.message.dto.*;
+import club.tempvs.message.model.Cursor;
+import club.tempvs.message.service.ReadMarkerService;
 import club.tempvs.message.util.EntityHelper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -23,6 +25,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.*;
 import java.util.stream.LongStream;
@@ -46,6 +49,8 @@ public class ConversationControllerIntegrationTest {
     private MockMvc mvc;
     @Autowired
     private EntityHelper entityHelper;
+    @Autowired
+    private ReadMarkerService readMarkerService;
 
     @BeforeClass
     public static void setupSpec() {
@@ -186,7 +191,7 @@ public class ConversationControllerIntegrationTest {
 
         Conversation conversation = entityHelper.createConversation(author, receivers, text, name);
         Long conversationId = conversation.getId();
-        List<Message> messages = conversation.getMessages();
+        List<Message> messages = entityHelper.getMessages(conversation);
         int messagesSize = messages.size();
         Long messageId = messages.get(0).getId();
         Boolean isSystem = messages.get(0).getIsSystem();
@@ -209,6 +214,43 @@ public class ConversationControllerIntegrationTest {
                     .andExpect(jsonPath("type", is(CONFERENCE)));
     }
 
+    @Test
+    public void testGetConversationForUnchangedVersion() throws Exception {
+        Long authorId = 1L;
+        Participant author = entityHelper.createParticipant(authorId, "name", "CLUB", "ANTIQUITY");
+        Participant receiver = entityHelper.createParticipant(2L, "name", "CLUB", "ANTIQUITY");
+        Conversation conversation = entityHelper.createConversation(author, new HashSet<>(Arrays.asList(receiver)), "text", null);
+        String url = "/api/conversations/" + conversation.getId();
+        String userInfoValue = buildUserInfoValue(authorId);
+
+        String eTag = mvc.perform(get(url)
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get(url)
+                .header("If-None-Match", eTag)
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isNotModified());
+
+        mvc.perform(post(url + "/messages")
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(getAddMessageDtoJson("new text"))
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk());
+
+        mvc.perform(get(url)
+                .header("If-None-Match", eTag)
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", not(eTag)));
+    }
+
     @Test
     public void testGetConversationForWrongCaller() throws Exception {
         Long authorId = 1L;
@@ -235,6 +277,71 @@ public class ConversationControllerIntegrationTest {
                     .andExpect(content().string("Participant " + wrongCallerId + " has no access to conversation " + conversationId));
     }
 
+    @Test
+    public void testGetConversationBeforeCursor() throws Exception {
+        Long authorId = 1L;
+        String text = "text";
+        String name = "name";
+
+        Participant author = entityHelper.createParticipant(authorId, "name", "CLUB", "ANTIQUITY");
+        Set<Participant> receivers = new HashSet<>(Arrays.asList(
+                entityHelper.createParticipant(4L, "name", "CLUB", "ANTIQUITY"),
+                entityHelper.createParticipant(2L, "name", "CLUB", "ANTIQUITY"),
+                entityHelper.createParticipant(3L, "name", "CLUB", "ANTIQUITY")
+        ));
+
+        Conversation conversation = entityHelper.createConversation(author, receivers, text, name);
+        Long conversationId = conversation.getId();
+        String userInfoValue = buildUserInfoValue(authorId);
+
+        for (String newMessageText : Arrays.asList("second", "third")) {
+            mvc.perform(post("/api/conversations/" + conversationId + "/messages")
+                    .contentType(APPLICATION_JSON_VALUE)
+                    .content(getAddMessageDtoJson(newMessageText))
+                    .header(USER_INFO_HEADER, userInfoValue)
+                    .header(AUTHORIZATION_HEADER, TOKEN))
+                        .andExpect(status().isOk());
+        }
+
+        List<Message> messages = entityHelper.getMessages(conversation);
+        String cursor = new Cursor(messages.get(2)).toString();
+
+        mvc.perform(get("/api/conversations/" + conversationId + "?size=1&before=" + cursor)
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("messages", hasSize(1)))
+                    .andExpect(jsonPath("messages[0].id", is(messages.get(1).getId().intValue())))
+                    .andExpect(jsonPath("messages[0].text", is("second")))
+                    .andExpect(jsonPath("messages[0].cursor", is(new Cursor(messages.get(1)).toString())));
+
+        mvc.perform(get("/api/conversations/" + conversationId + "?after=" + new Cursor(messages.get(0)).toString())
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("messages", hasSize(2)))
+                    .andExpect(jsonPath("messages[0].text", is("second")))
+                    .andExpect(jsonPath("messages[1].text", is("third")));
+    }
+
+    @Test
+    public void testGetConversationForMalformedCursor() throws Exception {
+        Long authorId = 1L;
+
+        Participant author = entityHelper.createParticipant(authorId, "name", "CLUB", "ANTIQUITY");
+        Set<Participant> receivers = new HashSet<>(Arrays.asList(
+                entityHelper.createParticipant(2L, "name", "CLUB", "ANTIQUITY")
+        ));
+
+        Conversation conversation = entityHelper.createConversation(author, receivers, "text", null);
+        String userInfoValue = buildUserInfoValue(authorId);
+
+        mvc.perform(get("/api/conversations/" + conversation.getId() + "?before=yesterday")
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testGetConversationsByParticipant() throws Exception {
         Long callerId = 3L;
@@ -275,6 +382,38 @@ public class ConversationControllerIntegrationTest {
                 .andExpect(jsonPath("conversations[1].unreadMessagesCount", is(1)));
     }
 
+    @Test
+    public void testGetConversationsByParticipantAfterCursor() throws Exception {
+        Long callerId = 3L;
+        String text = "text";
+
+        Participant caller = entityHelper.createParticipant(callerId, "name", "CLUB", "ANTIQUITY");
+        Participant author1 = entityHelper.createParticipant(10L, "name", "CLUB", "ANTIQUITY");
+        Participant author2 = entityHelper.createParticipant(15L, "name", "CLUB", "ANTIQUITY");
+
+        Conversation older = entityHelper.createConversation(author1, ImmutableSet.of(author2, caller), text, "older");
+        Conversation newer = entityHelper.createConversation(author2, ImmutableSet.of(caller), text, "newer");
+        String cursor = new Cursor(newer.getLastMessageCreatedDate(), newer.getId()).toString();
+        String userInfoValue = buildUserInfoValue(callerId);
+
+        mvc.perform(get("/api/conversations?size=1")
+            .header(USER_INFO_HEADER, userInfoValue)
+            .header(AUTHORIZATION_HEADER, TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("conversations", hasSize(1)))
+                .andExpect(jsonPath("conversations[0].id", is(newer.getId().intValue())))
+                .andExpect(jsonPath("conversations[0].cursor", is(cursor)));
+
+        mvc.perform(get("/api/conversations?size=10&after=" + cursor)
+            .header(USER_INFO_HEADER, userInfoValue)
+            .header(AUTHORIZATION_HEADER, TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("conversations", hasSize(1)))
+                .andExpect(jsonPath("conversations[0].id", is(older.getId().intValue())))
+                .andExpect(jsonPath("conversations[0].name", is("older")))
+                .andExpect(jsonPath("conversations[0].unreadMessagesCount", is(1)));
+    }
+
     @Test
     public void testGetConversationsByParticipantWithMultipleConversants() throws Exception {
         Long authorId = 10L;
@@ -290,7 +429,7 @@ public class ConversationControllerIntegrationTest {
 
         Conversation conversation = entityHelper.createConversation(author, receivers, text, name);
         Long conversationId = conversation.getId();
-        List<Message> messages = conversation.getMessages();
+        List<Message> messages = entityHelper.getMessages(conversation);
         Boolean isSystem = messages.get(0).getIsSystem();
         String userInfoValue = buildUserInfoValue(authorId);
 
@@ -365,7 +504,7 @@ public class ConversationControllerIntegrationTest {
 
         Conversation conversation = entityHelper.createConversation(author, receivers, text, name);
         Long conversationId = conversation.getId();
-        List<Message> messages = conversation.getMessages();
+        List<Message> messages = entityHelper.getMessages(conversation);
         int initialMessagesSize = messages.size();
         Long messageId = messages.get(0).getId();
         String addMessageJson = getAddMessageDtoJson(newMessageText);
@@ -397,6 +536,38 @@ public class ConversationControllerIntegrationTest {
                     .andExpect(jsonPath("type", is(CONFERENCE)));
     }
 
+    @Test
+    public void testAddMessageWithMinimalResponse() throws Exception {
+        Long authorId = 1L;
+        String newMessageText = "new message text";
+
+        Participant author = entityHelper.createParticipant(authorId, "name", "CLUB", "ANTIQUITY");
+        Set<Participant> receivers = new HashSet<>(Arrays.asList(
+                entityHelper.createParticipant(2L, "name", "CLUB", "ANTIQUITY"),
+                entityHelper.createParticipant(3L, "name", "CLUB", "ANTIQUITY")
+        ));
+
+        Conversation conversation = entityHelper.createConversation(author, receivers, "text", "name");
+        Long conversationId = conversation.getId();
+        String addMessageJson = getAddMessageDtoJson(newMessageText);
+        String userInfoValue = buildUserInfoValue(authorId);
+
+        mvc.perform(post("/api/conversations/" + conversationId + "/messages")
+                .accept(APPLICATION_JSON_VALUE)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(addMessageJson)
+                .header("Prefer", "return=minimal")
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("id", is(conversationId.intValue())))
+                    .andExpect(jsonPath("participants", hasSize(3)))
+                    .andExpect(jsonPath("messages", hasSize(1)))
+                    .andExpect(jsonPath("messages[0].text", is(newMessageText)))
+                    .andExpect(jsonPath("messages[0].author.id", is(authorId.intValue())))
+                    .andExpect(jsonPath("messages[0].unread", is(false)));
+    }
+
     @Test
     public void testAddMessageForMissingConversationInDB() throws Exception {
         Long authorId = 1L;
@@ -544,7 +715,7 @@ public class ConversationControllerIntegrationTest {
 
         Conversation conversation = entityHelper.createConversation(author, participants, text, name);
         Long conversationId = conversation.getId();
-        int messagesInitialSize = conversation.getMessages().size();
+        int messagesInitialSize = entityHelper.getMessages(conversation).size();
         String participantAddedMessage = "added";
 
         entityHelper.createParticipant(5L, "name", "USER", "");
@@ -623,7 +794,7 @@ public class ConversationControllerIntegrationTest {
 
         Conversation conversation = entityHelper.createConversation(author, receivers, text, name);
         Long conversationId = conversation.getId();
-        int messagesInitialSize = conversation.getMessages().size();
+        int messagesInitialSize = entityHelper.getMessages(conversation).size();
         String participantRemovedMessage = "removed";
         String url = "/api/conversations/" + conversationId + "/participants/" + removedParticipantId;
         String userInfoValue = buildUserInfoValue(authorId);
@@ -716,6 +887,31 @@ public class ConversationControllerIntegrationTest {
                     .andExpect(header().string(COUNT_HEADER, String.valueOf(3)));
     }
 
+    @Test
+    public void testAwaitNewConversationsCountForChangedCount() throws Exception {
+        Long receiverId = 2L;
+        Participant author = entityHelper.createParticipant(1L, "name", "CLUB", "ANTIQUITY");
+        Set<Participant> receivers = new HashSet<>(Arrays.asList(
+                entityHelper.createParticipant(receiverId, "name", "CLUB", "ANTIQUITY"),
+                entityHelper.createParticipant(3L, "name", "CLUB", "ANTIQUITY")
+        ));
+
+        entityHelper.createConversation(author, receivers, "text", "name");
+        String userInfoValue = buildUserInfoValue(receiverId);
+
+        MvcResult mvcResult = mvc.perform(head("/api/conversations?wait=30")
+                .header("If-None-Match", "\"0\"")
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(COUNT_HEADER, String.valueOf(1)))
+                .andExpect(header().string("ETag", "\"1\""));
+    }
+
     @Test
     public void testCountNewConversationsWhenRemovingTheUserFromConversation() throws Exception {
         Long authorId = 1L;
@@ -810,7 +1006,7 @@ public class ConversationControllerIntegrationTest {
 
         Conversation conversation = entityHelper.createConversation(author, receivers, text, name);
         Long conversationId = conversation.getId();
-        List<Message> messages = conversation.getMessages();
+        List<Message> messages = entityHelper.getMessages(conversation);
         List<Long> messagesIds = messages.stream().map(Message::getId).collect(toList());
 
         ReadMessagesDto readMessagesDto = new ReadMessagesDto();
@@ -827,6 +1023,85 @@ public class ConversationControllerIntegrationTest {
                     .andExpect(status().isOk());
     }
 
+    @Test
+    public void testReadMessagesUpToCursor() throws Exception {
+        Long receiverId = 2L;
+        Participant author = entityHelper.createParticipant(1L, "name", "CLUB", "ANTIQUITY");
+        Participant receiver = entityHelper.createParticipant(receiverId, "name", "CLUB", "ANTIQUITY");
+        Conversation conversation = entityHelper.createConversation(author, new HashSet<>(Arrays.asList(receiver)), "text", null);
+        Message message = entityHelper.getMessages(conversation).get(0);
+
+        String userInfoValue = buildUserInfoValue(receiverId);
+
+        ReadMessagesDto readMessagesDto = new ReadMessagesDto();
+        readMessagesDto.setUpTo(new Cursor(message).toString());
+
+        mvc.perform(head("/api/conversations")
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(COUNT_HEADER, String.valueOf(1)));
+
+        mvc.perform(post("/api/conversations/" + conversation.getId() + "/read")
+                .accept(APPLICATION_JSON_VALUE)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(mapper.writeValueAsString(readMessagesDto))
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk());
+
+        //the read position is written behind, within the test transaction here
+        readMarkerService.flush();
+
+        mvc.perform(get("/api/conversations/" + conversation.getId() + "?page=0&size=40")
+                .accept(APPLICATION_JSON_VALUE)
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("messages", hasSize(1)))
+                    .andExpect(jsonPath("messages[0].unread", is(false)));
+
+        mvc.perform(head("/api/conversations")
+                .header(USER_INFO_HEADER, userInfoValue)
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(COUNT_HEADER, String.valueOf(0)));
+    }
+
+    @Test
+    public void testReadMessagesOfOtherConversation() throws Exception {
+        Long receiverId = 2L;
+        Participant author = entityHelper.createParticipant(1L, "name", "CLUB", "ANTIQUITY");
+        Participant receiver = entityHelper.createParticipant(receiverId, "name", "CLUB", "ANTIQUITY");
+        Set<Participant> receivers = new HashSet<>(Arrays.asList(receiver));
+        Conversation conversation = entityHelper.createConversation(author, receivers, "text", null);
+        Conversation otherConversation = entityHelper.createConversation(author, receivers, "other text", null);
+        Message otherMessage = entityHelper.getMessages(otherConversation).get(0);
+
+        ReadMessagesDto readMessagesDto = new ReadMessagesDto();
+        readMessagesDto.setMessages(Arrays.asList(otherMessage.getId()));
+
+        mvc.perform(post("/api/conversations/" + conversation.getId() + "/read")
+                .accept(APPLICATION_JSON_VALUE)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(mapper.writeValueAsString(readMessagesDto))
+                .header(USER_INFO_HEADER, buildUserInfoValue(receiverId))
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        entityHelper.createParticipant(1L, "name", "CLUB", "ANTIQUITY");
+
+        mvc.perform(get("/api/stream")
+                .accept(TEXT_EVENT_STREAM_VALUE)
+                .header(USER_INFO_HEADER, buildUserInfoValue(1L))
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(request().asyncStarted());
+    }
+
     private String getCreateConversationDtoJson(Set<Long> receivers, String text, String name) throws Exception {
         CreateConversationDto createConversationDto = new CreateConversationDto();
         createConversationDto.setReceivers(receivers);
@@ -0,0 +1,369 @@
+package club.tempvs.message.controller;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.http.MediaType.*;
+
+import club.tempvs.message.domain.Conversation;
+import club.tempvs.message.domain.Message;
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.dto.AddMessageDto;
+import club.tempvs.message.dto.AddParticipantsDto;
+import club.tempvs.message.dto.CreateConversationDto;
+import club.tempvs.message.dto.ReadMessagesDto;
+import club.tempvs.message.dto.UpdateConversationNameDto;
+import club.tempvs.message.dto.UserInfoDto;
+import club.tempvs.message.service.NamePropagationService;
+import club.tempvs.message.service.ParticipantService;
+import club.tempvs.message.service.ReadMarkerService;
+import club.tempvs.message.util.EntityHelper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Pins the number of statements issued by the conversation endpoints: it must not depend
+ * on how many conversations, participants or messages are involved in a request.
+ * Requests run in their own transactions, as in production, and are measured once the caches
+ * they rely on are warm. The data is not rolled back, so it is created for participants
+ * no other test uses and deleted after each test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class ConversationStatementCountIntegrationTest {
+
+    private static final String USER_INFO_HEADER = "User-Info";
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String TOKEN = "df41895b9f26094d0b1d39b7bdd9849e"; //security_token as MD5
+    private static final Long FIRST_PARTICIPANT_ID = 10000L;
+    private static final Long CALLER_ID = FIRST_PARTICIPANT_ID;
+    private static ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private EntityHelper entityHelper;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ParticipantService participantService;
+    @Autowired
+    private ReadMarkerService readMarkerService;
+
+    //renames are propagated on a background thread, outside of the counted call
+    @MockBean
+    private NamePropagationService namePropagationService;
+
+    private Statistics statistics;
+    private Participant caller;
+    private long nextParticipantId;
+
+    @Before
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        nextParticipantId = FIRST_PARTICIPANT_ID + 1;
+        caller = entityHelper.createParticipant(CALLER_ID, "caller", "CLUB", "ANTIQUITY");
+    }
+
+    @After
+    public void cleanup() {
+        readMarkerService.flush();
+        List<Long> conversationIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT conversation_id FROM conversation_participants WHERE participants_id >= ?",
+                Long.class, FIRST_PARTICIPANT_ID);
+
+        for (Long conversationId : conversationIds) {
+            jdbcTemplate.update("DELETE FROM message WHERE conversation_id = ?", conversationId);
+            jdbcTemplate.update("DELETE FROM read_cursor WHERE conversation_id = ?", conversationId);
+            jdbcTemplate.update("DELETE FROM conversation_participants WHERE conversation_id = ?", conversationId);
+            jdbcTemplate.update("DELETE FROM conversation WHERE id = ?", conversationId);
+        }
+
+        jdbcTemplate.update("DELETE FROM unread_counter WHERE participant_id >= ?", FIRST_PARTICIPANT_ID);
+        jdbcTemplate.update("DELETE FROM participant WHERE id >= ?", FIRST_PARTICIPANT_ID);
+    }
+
+    @Test
+    public void testGetConversationStatementCount() throws Exception {
+        Conversation smallConversation = createConference(3);
+        Conversation largeConversation = createConference(10);
+        addMessages(largeConversation, 10);
+        perform(getConversation(smallConversation));
+        perform(getConversation(largeConversation));
+
+        //version, conversation with its members, page of messages, read position
+        assertEquals("Small conversation", 4L, countStatements(getConversation(smallConversation)));
+        assertEquals("Large conversation", 4L, countStatements(getConversation(largeConversation)));
+    }
+
+    @Test
+    public void testGetConversationsByParticipantStatementCount() throws Exception {
+        createDialogues(2);
+        perform(get("/api/conversations?page=0&size=40"));
+
+        //inbox version, page of conversations, unread messages of the page
+        assertEquals("Small page", 3L, countStatements(get("/api/conversations?page=0&size=40")));
+
+        createDialogues(8);
+
+        assertEquals("Large page", 3L, countStatements(get("/api/conversations?page=0&size=40")));
+    }
+
+    @Test
+    public void testCountConversationsStatementCount() throws Exception {
+        createDialogues(1);
+
+        //unread counter
+        assertEquals("Few conversations", 1L, countStatements(head("/api/conversations")));
+
+        createDialogues(5);
+
+        assertEquals("Many conversations", 1L, countStatements(head("/api/conversations")));
+    }
+
+    @Test
+    public void testCreateConversationStatementCount() throws Exception {
+        Set<Long> fewReceiverIds = createParticipantIds(2);
+        Set<Long> manyReceiverIds = createParticipantIds(9);
+        perform(createConversation(fewReceiverIds));
+
+        //conversation and message ids, unread counters, flush of the conversation, message, cursors and members,
+        //locked read cursors, author's unread counter, conversation version, inbox versions, page of messages,
+        //flush of the author's cursor, read position
+        assertEquals("Few receivers", 14L, countStatements(createConversation(fewReceiverIds)));
+        assertEquals("Many receivers", 14L, countStatements(createConversation(manyReceiverIds)));
+    }
+
+    @Test
+    public void testAddMessageStatementCount() throws Exception {
+        Conversation shortConversation = createConference(3);
+        Conversation longConversation = createConference(10);
+        addMessages(longConversation, 10);
+        addMessages(shortConversation, 1);
+
+        //conversation with its members, message id, locked read cursors, flush of the message, conversation and cursors,
+        //conversation version, inbox versions, page of messages, read position
+        assertEquals("Short conversation", 10L, countStatements(addMessage(shortConversation, "text")));
+        assertEquals("Long conversation", 10L, countStatements(addMessage(longConversation, "text")));
+    }
+
+    @Test
+    public void testRenameConversationStatementCount() throws Exception {
+        Conversation shortConversation = createConference(3);
+        Conversation longConversation = createConference(10);
+        addMessages(longConversation, 10);
+        perform(rename(shortConversation, "name"));
+        perform(rename(longConversation, "name"));
+
+        //conversation with its members, message id, locked read cursors, flush of the message, conversation and cursors,
+        //conversation version, inbox versions, page of messages, read position
+        assertEquals("Short conversation", 10L, countStatements(rename(shortConversation, "new name")));
+        assertEquals("Long conversation", 10L, countStatements(rename(longConversation, "new name")));
+    }
+
+    @Test
+    public void testReadMessagesStatementCount() throws Exception {
+        Conversation shortConversation = createConference(3);
+        Conversation longConversation = createConference(3);
+        addMessages(longConversation, 10);
+        perform(readMessages(shortConversation));
+        perform(readMessages(longConversation));
+
+        //last of the messages read, the read position itself is written behind
+        assertEquals("Few messages", 1L, countStatements(readMessages(shortConversation)));
+        assertEquals("Many messages", 1L, countStatements(readMessages(longConversation)));
+    }
+
+    @Test
+    public void testAddParticipantsStatementCount() throws Exception {
+        Conversation smallConversation = createConference(3);
+        Conversation largeConversation = createConference(10);
+        perform(addParticipants(smallConversation, createParticipantIds(2)));
+        perform(addParticipants(largeConversation, createParticipantIds(2)));
+
+        //conversation with its members, one id per system message, locked read cursors,
+        //flush of the messages, conversation, cursors and members, conversation version, inbox versions,
+        //unread counters of the added, page of messages, flush of the added cursors, read position
+        assertEquals("Small conversation", 14L,
+                countStatements(addParticipants(smallConversation, createParticipantIds(2))));
+        assertEquals("Large conversation", 14L,
+                countStatements(addParticipants(largeConversation, createParticipantIds(2))));
+    }
+
+    @Test
+    public void testRemoveParticipantStatementCount() throws Exception {
+        Conversation smallConversation = createConference(5);
+        Conversation largeConversation = createConference(10);
+        List<Long> smallConversationMemberIds = getMemberIds(smallConversation);
+        List<Long> largeConversationMemberIds = getMemberIds(largeConversation);
+        perform(removeParticipant(smallConversation, smallConversationMemberIds.get(0)));
+        perform(removeParticipant(largeConversation, largeConversationMemberIds.get(0)));
+
+        //conversation with its members, message id, locked read cursors,
+        //flush of the message, conversation, cursors and members, conversation version, inbox versions,
+        //unread counter and inbox version of the removed, page of messages, former members the page refers to,
+        //flush of the removed cursor, read position
+        assertEquals("Small conversation", 15L,
+                countStatements(removeParticipant(smallConversation, smallConversationMemberIds.get(1))));
+        assertEquals("Large conversation", 15L,
+                countStatements(removeParticipant(largeConversation, largeConversationMemberIds.get(1))));
+    }
+
+    @Test
+    public void testRefreshParticipantsStatementCount() {
+        //participants, flush of the new and the changed ones, unread counters of the new ones
+        assertEquals("Small batch", 4L, countRefreshStatements(2));
+        assertEquals("Large batch", 4L, countRefreshStatements(20));
+    }
+
+    private long countRefreshStatements(int size) {
+        List<Participant> snapshots = new ArrayList<>();
+
+        for (Long id : createParticipantIds(size / 2)) {
+            snapshots.add(new Participant(id, "renamed", "CLUB", "ANTIQUITY"));
+        }
+
+        for (int i = 0; i < size / 2; i++) {
+            snapshots.add(new Participant(nextParticipantId++, "new", "CLUB", "ANTIQUITY"));
+        }
+
+        statistics.clear();
+        participantService.refreshParticipants(snapshots);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Conversation createConference(int size) {
+        Set<Participant> receivers = new LinkedHashSet<>();
+
+        while (receivers.size() < size - 1) {
+            receivers.add(createParticipant());
+        }
+
+        return entityHelper.createConversation(caller, receivers, "text", "name");
+    }
+
+    private void createDialogues(int count) {
+        for (int i = 0; i < count; i++) {
+            entityHelper.createConversation(createParticipant(), ImmutableSet.of(caller), "text", "name");
+        }
+    }
+
+    private Participant createParticipant() {
+        return entityHelper.createParticipant(nextParticipantId++, "member", "CLUB", "ANTIQUITY");
+    }
+
+    private Set<Long> createParticipantIds(int count) {
+        Set<Long> participantIds = new LinkedHashSet<>();
+
+        for (int i = 0; i < count; i++) {
+            participantIds.add(createParticipant().getId());
+        }
+
+        return participantIds;
+    }
+
+    private List<Long> getMemberIds(Conversation conversation) {
+        return jdbcTemplate.queryForList(
+                "SELECT participants_id FROM conversation_participants WHERE conversation_id = ? AND participants_id <> ? " +
+                        "ORDER BY participants_id", Long.class, conversation.getId(), CALLER_ID);
+    }
+
+    private void addMessages(Conversation conversation, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            perform(addMessage(conversation, "text " + i));
+        }
+    }
+
+    private long countStatements(MockHttpServletRequestBuilder request) throws Exception {
+        statistics.clear();
+        perform(request);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void perform(MockHttpServletRequestBuilder request) throws Exception {
+        mvc.perform(request
+                .accept(APPLICATION_JSON_VALUE)
+                .contentType(APPLICATION_JSON_VALUE)
+                .header(USER_INFO_HEADER, buildUserInfoValue(CALLER_ID))
+                .header(AUTHORIZATION_HEADER, TOKEN))
+                    .andExpect(status().isOk());
+    }
+
+    private MockHttpServletRequestBuilder getConversation(Conversation conversation) {
+        return get("/api/conversations/" + conversation.getId() + "?page=0&size=40");
+    }
+
+    private MockHttpServletRequestBuilder createConversation(Set<Long> receiverIds) throws Exception {
+        CreateConversationDto createConversationDto = new CreateConversationDto();
+        createConversationDto.setReceivers(receiverIds);
+        createConversationDto.setText("text");
+        createConversationDto.setName("name");
+        return post("/api/conversations").content(mapper.writeValueAsString(createConversationDto));
+    }
+
+    private MockHttpServletRequestBuilder addMessage(Conversation conversation, String text) throws Exception {
+        AddMessageDto addMessageDto = new AddMessageDto();
+        addMessageDto.setText(text);
+        return post("/api/conversations/" + conversation.getId() + "/messages")
+                .content(mapper.writeValueAsString(addMessageDto));
+    }
+
+    private MockHttpServletRequestBuilder rename(Conversation conversation, String name) throws Exception {
+        UpdateConversationNameDto updateConversationNameDto = new UpdateConversationNameDto();
+        updateConversationNameDto.setName(name);
+        return patch("/api/conversations/" + conversation.getId() + "/name")
+                .content(mapper.writeValueAsString(updateConversationNameDto));
+    }
+
+    private MockHttpServletRequestBuilder readMessages(Conversation conversation) throws Exception {
+        ReadMessagesDto readMessagesDto = new ReadMessagesDto();
+        readMessagesDto.setMessages(entityHelper.getMessages(conversation).stream()
+                .map(Message::getId)
+                .collect(Collectors.toList()));
+        return post("/api/conversations/" + conversation.getId() + "/read")
+                .content(mapper.writeValueAsString(readMessagesDto));
+    }
+
+    private MockHttpServletRequestBuilder addParticipants(Conversation conversation, Set<Long> subjectIds) throws Exception {
+        AddParticipantsDto addParticipantsDto = new AddParticipantsDto();
+        addParticipantsDto.setParticipants(subjectIds);
+        return post("/api/conversations/" + conversation.getId() + "/participants")
+                .content(mapper.writeValueAsString(addParticipantsDto));
+    }
+
+    private MockHttpServletRequestBuilder removeParticipant(Conversation conversation, Long subjectId) {
+        return delete("/api/conversations/" + conversation.getId() + "/participants/" + subjectId);
+    }
+
+    private String buildUserInfoValue(Long profileId) throws Exception {
+        UserInfoDto userInfoDto = new UserInfoDto();
+        userInfoDto.setProfileId(profileId);
+        userInfoDto.setLang("en");
+        userInfoDto.setTimezone("UTC");
+        return mapper.writeValueAsString(userInfoDto);
+    }
+}
@@ -0,0 +1,66 @@
+package club.tempvs.message.service;
+
+import static org.junit.Assert.*;
+
+import club.tempvs.message.dao.ReadCursorRepository;
+import club.tempvs.message.domain.Conversation;
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.domain.ReadCursor;
+import club.tempvs.message.util.EntityHelper;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+
+@Transactional
+@SpringBootTest
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+public class ReadCursorServiceIntegrationTest {
+
+    @Autowired
+    private EntityHelper entityHelper;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private ReadCursorService readCursorService;
+    @Autowired
+    private ReadCursorRepository readCursorRepository;
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Test
+    public void testRefreshConversantsKeepsReadPositionMovedMeanwhile() {
+        Participant author = entityHelper.createParticipant(1L, "author", "CLUB", "ANTIQUITY");
+        Participant receiver = entityHelper.createParticipant(2L, "receiver", "CLUB", "ANTIQUITY");
+        Conversation conversation = entityHelper.createConversation(author, ImmutableSet.of(receiver), "text", null);
+        Long conversationId = conversation.getId();
+        ReadCursor.Key key = new ReadCursor.Key(conversationId, receiver.getId());
+
+        entityManager.flush();
+        entityManager.clear();
+
+        //the cursor is loaded before the read mark lands, as it would be by a concurrent propagation
+        ReadCursor staleCursor = readCursorRepository.findById(key).get();
+        assertTrue("The conversation is unread before the read mark", staleCursor.getUnread());
+
+        readCursorService.markAsRead(conversationId, receiver.getId(), Instant.now());
+        readCursorService.refreshConversants(receiver, 0L, 10);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        ReadCursor readCursor = readCursorRepository.findById(key).get();
+        assertFalse("The read mark is not overwritten by the propagation", readCursor.getUnread());
+        assertTrue("The read position is kept", readCursor.getLastReadOn().isAfter(Instant.EPOCH));
+        assertEquals("The conversant is refreshed", "author", readCursor.getConversant());
+        assertEquals("The unread counter matches the cursor", 0L, unreadCounterService.getUnreadConversationsCount(receiver.getId()));
+    }
+}
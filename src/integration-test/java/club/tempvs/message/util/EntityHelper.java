@@ -1,38 +1,65 @@
 package club.tempvs.message.util;
 
+import static java.util.stream.Collectors.toSet;
+
 import club.tempvs.message.dao.ConversationRepository;
+import club.tempvs.message.dao.MessageRepository;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
-import club.tempvs.message.service.MessageService;
+import club.tempvs.message.dto.UserInfoDto;
+import club.tempvs.message.holder.UserHolder;
+import club.tempvs.message.model.User;
+import club.tempvs.message.service.ConversationService;
 import club.tempvs.message.service.ParticipantService;
-import club.tempvs.message.service.impl.ConversationServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Set;
 
 @Component
 public class EntityHelper {
 
+    private static final int MAX_MESSAGES = 1000;
+
     private ParticipantService participantService;
-    private MessageService messageService;
-    private ConversationServiceImpl conversationService;
+    private ConversationService conversationService;
     private ConversationRepository conversationRepository;
+    private MessageRepository messageRepository;
+    private UserHolder userHolder;
 
     @Autowired
-    public EntityHelper(ParticipantService participantService, MessageService messageService,
-                        ConversationServiceImpl conversationService, ConversationRepository conversationRepository) {
+    public EntityHelper(ParticipantService participantService, ConversationService conversationService,
+                        ConversationRepository conversationRepository, MessageRepository messageRepository,
+                        UserHolder userHolder) {
         this.participantService = participantService;
         this.conversationService = conversationService;
         this.conversationRepository = conversationRepository;
-        this.messageService = messageService;
+        this.messageRepository = messageRepository;
+        this.userHolder = userHolder;
     }
 
+    /**
+     * Creates the conversation through the service on behalf of the author, as the endpoint does.
+     */
     public Conversation createConversation(Participant author, Set<Participant> receivers, String text, String name) {
-        Message message = messageService.createMessage(author, receivers, text, false, null, null);
-        Conversation conversation = conversationService.buildConversation(author, receivers, name, message);
-        return conversationRepository.save(conversation);
+        UserInfoDto userInfoDto = new UserInfoDto();
+        userInfoDto.setProfileId(author.getId());
+        userInfoDto.setLang("en");
+        userHolder.setUser(new User(userInfoDto));
+
+        Set<Long> receiverIds = receivers.stream()
+                .map(Participant::getId)
+                .collect(toSet());
+        Long conversationId = conversationService.createConversation(receiverIds, name, text, true).getId();
+        return conversationRepository.findById(conversationId).get();
+    }
+
+    public List<Message> getMessages(Conversation conversation) {
+        return messageRepository.findByConversation(conversation, PageRequest.of(0, MAX_MESSAGES, Sort.Direction.ASC, "createdDate"));
     }
 
     public Participant createParticipant(Long id, String name, String type, String period) {
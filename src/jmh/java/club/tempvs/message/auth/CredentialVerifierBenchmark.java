@@ -0,0 +1,50 @@
+package club.tempvs.message.auth;
+
+import club.tempvs.message.auth.impl.TokenDigestCredentialVerifier;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request cost of checking the Authorization header: digesting the configured token
+ * on every request, as the interceptor used to, against comparing with digests precomputed at startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CredentialVerifierBenchmark {
+
+    private static final String TOKEN = "security_token";
+    private static final String NEW_TOKEN = "new_token";
+
+    private CredentialVerifier credentialVerifier;
+    private CredentialVerifier rotatingCredentialVerifier;
+    private String credential;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        credentialVerifier = new TokenDigestCredentialVerifier(new String[]{TOKEN});
+        rotatingCredentialVerifier = new TokenDigestCredentialVerifier(new String[]{NEW_TOKEN, TOKEN});
+        credential = DigestUtils.md5DigestAsHex(TOKEN.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public boolean digestPerRequest() {
+        return credential.equals(DigestUtils.md5DigestAsHex(TOKEN.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public boolean precomputedDigest() {
+        return credentialVerifier.verify(credential);
+    }
+
+    @Benchmark
+    public boolean precomputedDigestDuringRotation() {
+        return rotatingCredentialVerifier.verify(credential);
+    }
+}
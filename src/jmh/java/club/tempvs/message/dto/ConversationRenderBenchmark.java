@@ -0,0 +1,81 @@
+package club.tempvs.message.dto;
+
+import club.tempvs.message.domain.Conversation;
+import club.tempvs.message.domain.Message;
+import club.tempvs.message.domain.Participant;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a full page of 40 messages into a GetConversationDto and compares the date formatting it performs
+ * with the former per-message zone and formatter construction. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversationRenderBenchmark {
+
+    private static final int PAGE_SIZE = 40;
+    private static final String ZONE_ID = "Europe/Minsk";
+
+    private Conversation conversation;
+    private List<Message> messages;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Participant author = new Participant(1L, "author", "CLUB", "ANTIQUITY");
+        Participant receiver = new Participant(2L, "receiver", "CLUB", "ANTIQUITY");
+
+        conversation = new Conversation();
+        conversation.setId(1L);
+        conversation.setType(Conversation.Type.DIALOGUE);
+        conversation.addParticipant(author);
+        conversation.addParticipant(receiver);
+
+        messages = new ArrayList<>();
+        Instant createdDate = Instant.now();
+
+        for (long i = 0; i < PAGE_SIZE; i++) {
+            Message message = new Message();
+            message.setId(i);
+            message.setConversation(conversation);
+            message.setAuthor(i % 2 == 0 ? author : receiver);
+            message.setText("text " + i);
+            message.setCreatedDate(createdDate.minusSeconds(i));
+            messages.add(message);
+        }
+    }
+
+    @Benchmark
+    public GetConversationDto renderConversation() {
+        return new GetConversationDto(conversation, new ArrayList<>(messages), Instant.EPOCH, ZONE_ID);
+    }
+
+    @Benchmark
+    public void formatDatesPerMessage(Blackhole blackhole) {
+        for (Message message : messages) {
+            DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
+                    .withLocale(Locale.ENGLISH);
+            blackhole.consume(message.getCreatedDate().atZone(ZoneId.of(ZONE_ID)).format(formatter));
+        }
+    }
+
+    @Benchmark
+    public void formatDatesFromRegistry(Blackhole blackhole) {
+        for (Message message : messages) {
+            blackhole.consume(DateFormatterRegistry.format(message.getCreatedDate(), Locale.ENGLISH, ZONE_ID));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package club.tempvs.message.service;
+
+import static java.util.Collections.singleton;
+
+import club.tempvs.message.dto.GetConversationDto;
+import club.tempvs.message.dto.UserInfoDto;
+import club.tempvs.message.holder.UserHolder;
+import club.tempvs.message.model.User;
+import club.tempvs.message.util.BenchmarkContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of appending a message to a conversation depending on the size of its history.
+ * The insert path must not touch existing messages, so the score is expected to stay flat across all params.
+ * Messages are posted through the service with the minimal response, so that no history page is loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MessageInsertBenchmark {
+
+    private static final long AUTHOR_ID = 1L;
+    private static final long RECEIVER_ID = 2L;
+    private static final long SEEDED_MESSAGE_ID_OFFSET = 1_000_000_000L;
+    private static final int SEED_BATCH_SIZE = 10_000;
+    private static final String TEXT = "text";
+    private static final String SEED_MESSAGE_SQL = "INSERT INTO message (id, conversation_id, author_id, text, is_system, created_date) " +
+            "VALUES (?, ?, ?, ?, FALSE, ?)";
+
+    @Param({"10", "10000", "1000000"})
+    private int historySize;
+
+    private ConfigurableApplicationContext context;
+    private ConversationService conversationService;
+    private ParticipantService participantService;
+    private UserHolder userHolder;
+    private User author;
+    private Long conversationId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        conversationService = context.getBean(ConversationService.class);
+        participantService = context.getBean(ParticipantService.class);
+        userHolder = context.getBean(UserHolder.class);
+        author = buildUser(AUTHOR_ID);
+
+        conversationId = createConversation();
+        seedHistory(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public GetConversationDto addMessage() {
+        //the holder is thread scoped here, the benchmark thread may differ from the setup one
+        userHolder.setUser(author);
+        return conversationService.addMessage(conversationId, TEXT, true);
+    }
+
+    private Long createConversation() {
+        participantService.refreshParticipant(AUTHOR_ID, "author", "USER", "");
+        participantService.refreshParticipant(RECEIVER_ID, "receiver", "USER", "");
+        userHolder.setUser(author);
+        return conversationService.createConversation(singleton(RECEIVER_ID), null, TEXT, true).getId();
+    }
+
+    private User buildUser(Long profileId) {
+        UserInfoDto userInfoDto = new UserInfoDto();
+        userInfoDto.setProfileId(profileId);
+        userInfoDto.setLang("en");
+        return new User(userInfoDto);
+    }
+
+    private void seedHistory(JdbcTemplate jdbcTemplate) {
+        Timestamp createdDate = Timestamp.from(Instant.now().minus(1, ChronoUnit.DAYS));
+
+        //the first message has already been created along with the conversation
+        for (int from = 1; from < historySize; from += SEED_BATCH_SIZE) {
+            final long firstId = SEEDED_MESSAGE_ID_OFFSET + from;
+            final int batchSize = Math.min(SEED_BATCH_SIZE, historySize - from);
+
+            jdbcTemplate.batchUpdate(SEED_MESSAGE_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, firstId + i);
+                    ps.setLong(2, conversationId);
+                    ps.setLong(3, AUTHOR_ID);
+                    ps.setString(4, TEXT);
+                    ps.setTimestamp(5, createdDate);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batchSize;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.dao.ConversationRepository;
+import club.tempvs.message.util.BenchmarkContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the header badge count computed from the read cursors with the materialized unread counter.
+ * The counter is a primary key read, so its score is expected to stay flat regardless of the inbox size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UnreadCountBenchmark {
+
+    private static final long PARTICIPANT_ID = 1L;
+    private static final long CONVERSANT_ID = 2L;
+    private static final long SEEDED_CONVERSATION_ID_OFFSET = 1_000_000_000L;
+    private static final int SEED_BATCH_SIZE = 10_000;
+    private static final String SEED_CONVERSATION_SQL = "INSERT INTO conversation " +
+            "(id, type, created_date, last_message_text, last_message_author_name, last_message_created_date, last_message_system) " +
+            "VALUES (?, 0, ?, 'text', 'conversant', ?, FALSE)";
+    private static final String SEED_PARTICIPANTS_SQL = "INSERT INTO conversation_participants (conversation_id, participants_id) " +
+            "VALUES (?, ?)";
+    private static final String SEED_READ_CURSOR_SQL = "INSERT INTO read_cursor (conversation_id, participant_id, last_read_on, unread) " +
+            "VALUES (?, ?, ?, FALSE)";
+
+    @Param({"100000"})
+    private int conversations;
+
+    private ConfigurableApplicationContext context;
+    private ConversationRepository conversationRepository;
+    private UnreadCounterService unreadCounterService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        conversationRepository = context.getBean(ConversationRepository.class);
+        unreadCounterService = context.getBean(UnreadCounterService.class);
+        ParticipantService participantService = context.getBean(ParticipantService.class);
+        participantService.refreshParticipant(PARTICIPANT_ID, "participant", "USER", "");
+        participantService.refreshParticipant(CONVERSANT_ID, "conversant", "USER", "");
+
+        seedInbox(context.getBean(JdbcTemplate.class));
+        unreadCounterService.rebuildUnreadCounters();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long countByReadCursors() {
+        return conversationRepository.countByNewMessagesPerParticipant(PARTICIPANT_ID);
+    }
+
+    @Benchmark
+    public long countByUnreadCounter() {
+        return unreadCounterService.getUnreadConversationsCount(PARTICIPANT_ID);
+    }
+
+    private void seedInbox(JdbcTemplate jdbcTemplate) {
+        Instant now = Instant.now();
+        Timestamp createdDate = Timestamp.from(now.minus(1, ChronoUnit.DAYS));
+        Timestamp lastMessageCreatedDate = Timestamp.from(now);
+
+        for (int from = 0; from < conversations; from += SEED_BATCH_SIZE) {
+            final long firstId = SEEDED_CONVERSATION_ID_OFFSET + from;
+            final int batchSize = Math.min(SEED_BATCH_SIZE, conversations - from);
+
+            jdbcTemplate.batchUpdate(SEED_CONVERSATION_SQL, new SeedSetter(batchSize) {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, firstId + i);
+                    ps.setTimestamp(2, createdDate);
+                    ps.setTimestamp(3, lastMessageCreatedDate);
+                }
+            });
+
+            for (long participantId : new long[]{PARTICIPANT_ID, CONVERSANT_ID}) {
+                jdbcTemplate.batchUpdate(SEED_PARTICIPANTS_SQL, new SeedSetter(batchSize) {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, firstId + i);
+                        ps.setLong(2, participantId);
+                    }
+                });
+
+                //every other conversation stays unread for the participant
+                jdbcTemplate.batchUpdate(SEED_READ_CURSOR_SQL, new SeedSetter(batchSize) {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        boolean read = participantId == CONVERSANT_ID || i % 2 == 0;
+                        ps.setLong(1, firstId + i);
+                        ps.setLong(2, participantId);
+                        ps.setTimestamp(3, read ? lastMessageCreatedDate : createdDate);
+                    }
+                });
+            }
+        }
+    }
+
+    private abstract static class SeedSetter implements BatchPreparedStatementSetter {
+
+        private final int batchSize;
+
+        SeedSetter(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package club.tempvs.message.util;
+
+import club.tempvs.message.Application;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.SimpleThreadScope;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Boots the application without the web layer against the "benchmark" profile.
+ * An in-memory H2 database is used unless JDBC_DATABASE_URL points somewhere else.
+ * Request scoped beans, such as the user holder, live per thread instead.
+ */
+public final class BenchmarkContext {
+
+    private static final String BENCHMARK_PROFILE = "benchmark";
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles(BENCHMARK_PROFILE)
+                .initializers(context -> context.getBeanFactory()
+                        .registerScope(WebApplicationContext.SCOPE_REQUEST, new SimpleThreadScope()))
+                .run();
+    }
+}
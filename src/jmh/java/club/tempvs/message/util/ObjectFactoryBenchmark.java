@@ -0,0 +1,86 @@
+package club.tempvs.message.util;
+
+import club.tempvs.message.domain.Message;
+import club.tempvs.message.util.impl.ObjectFactoryImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cached method handle factory with the former reflective lookup on the two hot call sites:
+ * creating a blank message and copying a message for translation. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectFactoryBenchmark {
+
+    private ObjectFactory cachedFactory;
+    private ObjectFactory reflectiveFactory;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cachedFactory = new ObjectFactoryImpl();
+        reflectiveFactory = new ReflectiveObjectFactory();
+        message = new Message();
+        message.setText("text");
+    }
+
+    @Benchmark
+    public Message createMessageCached() {
+        return cachedFactory.getInstance(Message.class);
+    }
+
+    @Benchmark
+    public Message createMessageReflective() {
+        return reflectiveFactory.getInstance(Message.class);
+    }
+
+    @Benchmark
+    public Message copyMessageCached() {
+        return cachedFactory.getInstance(Message.class, message);
+    }
+
+    @Benchmark
+    public Message copyMessageReflective() {
+        return reflectiveFactory.getInstance(Message.class, message);
+    }
+
+    /**
+     * The constructor lookup performed on every call before the handles were cached.
+     */
+    private static class ReflectiveObjectFactory implements ObjectFactory {
+
+        @Override
+        public <T> T getInstance(Class<T> clazz, Object... args) {
+            Class[] parameterTypes = Arrays.stream(args).map(Object::getClass).toArray(Class[]::new);
+            Constructor<T>[] constructors = (Constructor<T>[]) clazz.getConstructors();
+            Constructor<T> constructor = Arrays.stream(constructors)
+                    .filter(constr -> constr.getParameterCount() == parameterTypes.length)
+                    .filter(constr -> {
+                        Class[] classes = constr.getParameterTypes();
+
+                        for (int i = 0; i < parameterTypes.length; i++) {
+                            if (!classes[i].isAssignableFrom(parameterTypes[i])) {
+                                return false;
+                            }
+                        }
+
+                        return true;
+                    })
+                    .findAny().orElseThrow(() -> new RuntimeException("ObjectFactory: Constructor not found."));
+
+            try {
+                return constructor.newInstance(args);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
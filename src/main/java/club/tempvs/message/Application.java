@@ -1,6 +1,8 @@
 package club.tempvs.message;
 
+import club.tempvs.message.dao.PersistableInterceptor;
 import com.rabbitmq.client.ConnectionFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.circuitbreaker.EnableCircuitBreaker;
@@ -16,6 +18,8 @@ public class Application {
 
     private static final String CLOUDAMQP_URL = System.getenv("CLOUDAMQP_URL");
     private static final int CLOUDAMQP_CONNECTION_TIMEOUT = 30000;
+    private static final int AMQP_NETWORK_RECOVERY_INTERVAL = 5000;
+    private static final String HIBERNATE_BATCH_SIZE = "50";
 
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
@@ -24,6 +28,8 @@ public class Application {
     @Bean
     public ConnectionFactory amqpConnectionFactory() throws Exception {
         ConnectionFactory connectionFactory = new ConnectionFactory();
+        connectionFactory.setAutomaticRecoveryEnabled(true);
+        connectionFactory.setNetworkRecoveryInterval(AMQP_NETWORK_RECOVERY_INTERVAL);
 
         if (CLOUDAMQP_URL != null) {
             connectionFactory.setUri(CLOUDAMQP_URL);
@@ -32,4 +38,19 @@ public class Application {
 
         return connectionFactory;
     }
+
+    //groups the writes of a flush into jdbc batches unless the external config says otherwise
+    @Bean
+    public HibernatePropertiesCustomizer hibernateBatchingCustomizer() {
+        return properties -> {
+            properties.putIfAbsent("hibernate.jdbc.batch_size", HIBERNATE_BATCH_SIZE);
+            properties.putIfAbsent("hibernate.order_inserts", "true");
+            properties.putIfAbsent("hibernate.order_updates", "true");
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateInterceptorCustomizer() {
+        return properties -> properties.put("hibernate.session_factory.interceptor", new PersistableInterceptor());
+    }
 }
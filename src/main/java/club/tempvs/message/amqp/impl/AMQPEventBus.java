@@ -0,0 +1,161 @@
+package club.tempvs.message.amqp.impl;
+
+import club.tempvs.message.bus.EventBus;
+import club.tempvs.message.model.ConversationEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bus spanning all nodes of the service. Every node binds its own exclusive queue to a fanout exchange
+ * and ignores the events it has published itself, those are handed to the local listeners directly.
+ * Events are published from a single thread over a single channel and consumed without acknowledgement,
+ * so each node receives the events of another one in publishing order and at most once.
+ */
+@Component
+@ConditionalOnProperty(value = "event-bus.type", havingValue = "amqp")
+public class AMQPEventBus implements EventBus {
+
+    private static final String MESSAGE_EVENTS_AMQP_EXCHANGE = "message.events";
+    private static final String FANOUT_EXCHANGE_TYPE = "fanout";
+    private static final String ROUTING_KEY = "";
+    private static final long CONNECTION_RETRY_INTERVAL = 30 * 1000L;
+
+    private final ObjectMapper jacksonObjectMapper;
+    private final ConnectionFactory amqpConnectionFactory;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<ConversationEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private Connection connection;
+    private Channel publishChannel;
+
+    @Autowired
+    public AMQPEventBus(ObjectMapper jacksonObjectMapper, ConnectionFactory amqpConnectionFactory) {
+        this.jacksonObjectMapper = jacksonObjectMapper;
+        this.amqpConnectionFactory = amqpConnectionFactory;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.execute(this::connect);
+    }
+
+    public void publish(ConversationEvent event) {
+        deliver(event);
+        executor.execute(() -> send(event));
+    }
+
+    public void subscribe(Consumer<ConversationEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(CONNECTION_RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+
+            if (connection != null && connection.isOpen()) {
+                connection.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //runs on the executor, retries until the first connection succeeds, the client recovers it later on
+    private void connect() {
+        try {
+            connection = amqpConnectionFactory.newConnection();
+            publishChannel = connection.createChannel();
+            publishChannel.exchangeDeclare(MESSAGE_EVENTS_AMQP_EXCHANGE, FANOUT_EXCHANGE_TYPE);
+
+            Channel consumeChannel = connection.createChannel();
+            String queue = consumeChannel.queueDeclare().getQueue();
+            consumeChannel.queueBind(queue, MESSAGE_EVENTS_AMQP_EXCHANGE, ROUTING_KEY);
+            consumeChannel.basicConsume(queue, true, new EventConsumer(consumeChannel));
+        } catch (Exception e) {
+            e.printStackTrace();
+            disconnect();
+            executor.schedule(this::connect, CONNECTION_RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void disconnect() {
+        try {
+            if (connection != null && connection.isOpen()) {
+                connection.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        connection = null;
+        publishChannel = null;
+    }
+
+    //runs on the executor, events published while disconnected reach the local listeners only
+    private void send(ConversationEvent event) {
+        if (publishChannel == null) {
+            return;
+        }
+
+        try {
+            AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().appId(nodeId).build();
+            publishChannel.basicPublish(MESSAGE_EVENTS_AMQP_EXCHANGE, ROUTING_KEY, properties,
+                    jacksonObjectMapper.writeValueAsBytes(event));
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void deliver(ConversationEvent event) {
+        listeners.forEach(listener -> {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private class EventConsumer extends DefaultConsumer {
+
+        EventConsumer(Channel channel) {
+            super(channel);
+        }
+
+        @Override
+        public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+            if (nodeId.equals(properties.getAppId())) {
+                return;
+            }
+
+            try {
+                deliver(jacksonObjectMapper.readValue(body, ConversationEvent.class));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
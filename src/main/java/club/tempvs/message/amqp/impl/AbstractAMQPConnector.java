@@ -1,70 +1,192 @@
 package club.tempvs.message.amqp.impl;
 
-import club.tempvs.message.util.ObjectFactory;
+import static java.util.stream.Collectors.toList;
+
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.QueueingConsumer;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import lombok.Value;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+/**
+ * Keeps a single long-lived consumer subscribed to the queue. Deliveries are pushed by the broker,
+ * bounded by the prefetch count, and handed to the action in micro-batches that are acknowledged
+ * once the action returns. Broken connections are restored by the client's automatic recovery,
+ * so {@link #execute(Consumer)} only has to connect once.
+ */
 public abstract class AbstractAMQPConnector {
 
-    private static final int DELIVERY_TIMEOUT = 30000; //30 seconds
+    private static final int PREFETCH_COUNT = 200;
+    private static final int BATCH_SIZE = 100;
+    private static final long BATCH_DELAY = 100; //milliseconds
 
     protected ConnectionFactory amqpConnectionFactory;
-    protected  ObjectFactory objectFactory;
 
-    public AbstractAMQPConnector(ConnectionFactory amqpConnectionFactory, ObjectFactory objectFactory) {
+    private Connection connection;
+    private Channel channel;
+    private ScheduledExecutorService executor;
+
+    public AbstractAMQPConnector(ConnectionFactory amqpConnectionFactory) {
         this.amqpConnectionFactory = amqpConnectionFactory;
-        this.objectFactory = objectFactory;
     }
 
-    protected void execute(Consumer<String> action) {
-        Connection connection = null;
-        Channel channel = null;
+    /**
+     * Subscribes the action to the queue unless it is subscribed already.
+     */
+    protected synchronized void execute(Consumer<List<String>> action) {
+        if (connection != null) {
+            return;
+        }
 
         try {
             connection = amqpConnectionFactory.newConnection();
             channel = connection.createChannel();
             channel.queueDeclare(getQueue(), false, false, false, null);
+            channel.basicQos(PREFETCH_COUNT);
+            executor = Executors.newSingleThreadScheduledExecutor();
+            channel.basicConsume(getQueue(), false, new BatchingConsumer(channel, executor, action));
+        } catch (Exception e) {
+            e.printStackTrace();
+            close();
+        }
+    }
 
-            QueueingConsumer consumer = objectFactory.getInstance(QueueingConsumer.class,channel);
-            channel.basicConsume(getQueue(), true, consumer);
+    @PreDestroy
+    public synchronized void close() {
+        //unacknowledged deliveries of an unfinished batch are redelivered by the broker
+        if (executor != null) {
+            executor.shutdown();
+        }
 
-            while (true) {
-                QueueingConsumer.Delivery delivery = consumer.nextDelivery(DELIVERY_TIMEOUT);
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 
-                if (delivery != null) {
-                    String message = new String(delivery.getBody());
-                    action.accept(message);
-                } else {
-                    throw new RuntimeException("The " + getQueue() + " queue is empty");
-                }
+        try {
+            if (connection != null && connection.isOpen()) {
+                connection.close();
             }
-        } catch (RuntimeException e) {
-            //do nothing, just skip until the next execution
         } catch (Exception e) {
             e.printStackTrace();
-        } finally {
+        }
+
+        executor = null;
+        channel = null;
+        connection = null;
+    }
+
+    protected abstract String getQueue();
+
+    /**
+     * Collects deliveries until the batch is full or the oldest one has waited for {@link #BATCH_DELAY}.
+     * Batches are collected, processed and acknowledged on the executor's single thread.
+     */
+    private static class BatchingConsumer extends DefaultConsumer {
+
+        private final ScheduledExecutorService executor;
+        private final Consumer<List<String>> action;
+        private final List<Delivery> batch = new ArrayList<>();
+        private ScheduledFuture<?> scheduledFlush;
+
+        BatchingConsumer(Channel channel, ScheduledExecutorService executor, Consumer<List<String>> action) {
+            super(channel);
+            this.executor = executor;
+            this.action = action;
+        }
+
+        @Override
+        public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+            Delivery delivery = new Delivery(envelope, new String(body, StandardCharsets.UTF_8));
+            executor.execute(() -> add(delivery));
+        }
+
+        private void add(Delivery delivery) {
+            batch.add(delivery);
+
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::flush, BATCH_DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void flush() {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<Delivery> deliveries = new ArrayList<>(batch);
+            batch.clear();
+
             try {
-                if (channel != null) {
-                    channel.close();
-                }
-            } catch (IOException e) {
+                action.accept(deliveries.stream()
+                        .map(Delivery::getBody)
+                        .collect(toList()));
+                ack(deliveries.get(deliveries.size() - 1), true);
+            } catch (RuntimeException e) {
                 e.printStackTrace();
+                //retries the deliveries one by one to isolate the failing one
+                deliveries.forEach(this::process);
             }
+        }
 
+        private void process(Delivery delivery) {
             try {
-                if (connection != null) {
-                    connection.close();
+                action.accept(Collections.singletonList(delivery.getBody()));
+                ack(delivery, false);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                //requeues a failed delivery once, drops it if it fails again
+                try {
+                    getChannel().basicNack(delivery.getDeliveryTag(), false, !delivery.isRedeliver());
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
                 }
+            }
+        }
+
+        private void ack(Delivery delivery, boolean multiple) {
+            try {
+                getChannel().basicAck(delivery.getDeliveryTag(), multiple);
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
     }
 
-    protected abstract String getQueue();
+    @Value
+    private static class Delivery {
+        long deliveryTag;
+        boolean redeliver;
+        String body;
+
+        Delivery(Envelope envelope, String body) {
+            this.deliveryTag = envelope.getDeliveryTag();
+            this.redeliver = envelope.isRedeliver();
+            this.body = body;
+        }
+    }
 }
@@ -1,15 +1,20 @@
 package club.tempvs.message.amqp.impl;
 
+import static java.util.Objects.nonNull;
+
 import club.tempvs.message.amqp.ParticipantSynchronizer;
+import club.tempvs.message.domain.Participant;
 import club.tempvs.message.dto.ParticipantDto;
 import club.tempvs.message.service.ParticipantService;
-import club.tempvs.message.util.ObjectFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rabbitmq.client.ConnectionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 public class ParticipantSynchronizerImpl extends AbstractAMQPConnector implements ParticipantSynchronizer {
@@ -22,31 +27,41 @@ public class ParticipantSynchronizerImpl extends AbstractAMQPConnector implement
     @Autowired
     public ParticipantSynchronizerImpl(ObjectMapper jacksonObjectMapper,
                                        ParticipantService participantService,
-                                       ConnectionFactory amqpConnectionFactory,
-                                       ObjectFactory objectFactory) {
-        super(amqpConnectionFactory, objectFactory);
+                                       ConnectionFactory amqpConnectionFactory) {
+        super(amqpConnectionFactory);
         this.participantService = participantService;
         this.jacksonObjectMapper = jacksonObjectMapper;
     }
 
     public void execute() {
-        super.execute(jsonMessage -> refreshParticipant(jsonMessage));
+        super.execute(jsonMessages -> refreshParticipants(jsonMessages));
     }
 
     protected String getQueue() {
         return MESSAGE_PARTICIPANT_AMQP_QUEUE;
     }
 
-    private void refreshParticipant(String json) {
-        try {
-            ParticipantDto participantDto = jacksonObjectMapper.readValue(json, ParticipantDto.class);
-            participantService.refreshParticipant(
-                    participantDto.getId(),
-                    participantDto.getName(),
-                    participantDto.getType(),
-                    participantDto.getPeriod());
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void refreshParticipants(List<String> jsonMessages) {
+        //only the latest update of each participant within a batch matters
+        Map<Long, Participant> participants = new LinkedHashMap<>();
+
+        for (String json : jsonMessages) {
+            try {
+                ParticipantDto participantDto = jacksonObjectMapper.readValue(json, ParticipantDto.class);
+
+                if (nonNull(participantDto.getId())) {
+                    participants.remove(participantDto.getId());
+                    participants.put(participantDto.getId(), new Participant(
+                            participantDto.getId(),
+                            participantDto.getName(),
+                            participantDto.getType(),
+                            participantDto.getPeriod()));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+
+        participantService.refreshParticipants(participants.values());
     }
 }
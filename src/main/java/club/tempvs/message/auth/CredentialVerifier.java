@@ -0,0 +1,9 @@
+package club.tempvs.message.auth;
+
+/**
+ * Checks the credential a caller presents in the Authorization header.
+ */
+public interface CredentialVerifier {
+
+    boolean verify(String credential);
+}
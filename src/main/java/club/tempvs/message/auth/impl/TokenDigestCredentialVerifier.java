@@ -0,0 +1,46 @@
+package club.tempvs.message.auth.impl;
+
+import club.tempvs.message.auth.CredentialVerifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Accepts the MD5 digest of any of the configured tokens. Several comma-separated tokens may be active
+ * at once so that a new token can be rolled out before the old one is retired. Digests are computed once
+ * at startup and compared in constant time.
+ */
+@Component
+public class TokenDigestCredentialVerifier implements CredentialVerifier {
+
+    private final byte[][] digests;
+
+    public TokenDigestCredentialVerifier(@Value("${authorization.token}") String[] tokens) {
+        this.digests = Arrays.stream(tokens)
+                .map(String::trim)
+                .filter(token -> !token.isEmpty())
+                .map(token -> DigestUtils.md5DigestAsHex(token.getBytes(StandardCharsets.UTF_8)))
+                .map(digest -> digest.getBytes(StandardCharsets.US_ASCII))
+                .toArray(byte[][]::new);
+    }
+
+    @Override
+    public boolean verify(String credential) {
+        if (credential == null) {
+            return false;
+        }
+
+        byte[] credentialBytes = credential.getBytes(StandardCharsets.US_ASCII);
+        boolean verified = false;
+
+        for (byte[] digest : digests) {
+            verified |= MessageDigest.isEqual(digest, credentialBytes);
+        }
+
+        return verified;
+    }
+}
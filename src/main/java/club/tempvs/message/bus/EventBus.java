@@ -0,0 +1,16 @@
+package club.tempvs.message.bus;
+
+import club.tempvs.message.model.ConversationEvent;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries conversation events to the listeners of every node, the publishing one included.
+ * Events of one node are delivered in the order they are published, each one at most once.
+ */
+public interface EventBus {
+
+    void publish(ConversationEvent event);
+
+    void subscribe(Consumer<ConversationEvent> listener);
+}
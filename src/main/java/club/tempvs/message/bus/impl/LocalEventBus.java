@@ -0,0 +1,28 @@
+package club.tempvs.message.bus.impl;
+
+import club.tempvs.message.bus.EventBus;
+import club.tempvs.message.model.ConversationEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Single node bus, hands the events straight to the local listeners.
+ */
+@Component
+@ConditionalOnProperty(value = "event-bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalEventBus implements EventBus {
+
+    private final List<Consumer<ConversationEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    public void publish(ConversationEvent event) {
+        listeners.forEach(listener -> listener.accept(event));
+    }
+
+    public void subscribe(Consumer<ConversationEvent> listener) {
+        listeners.add(listener);
+    }
+}
@@ -2,19 +2,27 @@ package club.tempvs.message.controller;
 
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 import static org.springframework.http.HttpStatus.*;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 import club.tempvs.message.api.*;
 import club.tempvs.message.dto.*;
+import club.tempvs.message.model.Cursor;
 import club.tempvs.message.service.*;
 import com.netflix.hystrix.exception.HystrixRuntimeException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.*;
+import org.springframework.beans.TypeMismatchException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api")
@@ -25,97 +33,169 @@ public class ConversationController {
 
     private static final int MAX_PAGE_SIZE = 40;
     private static final String COUNT_HEADER = "X-Total-Count";
+    private static final String PREFER_HEADER = "Prefer";
+    private static final String RETURN_MINIMAL_PREFERENCE = "return=minimal";
     private static final String PAGE_PARAM = "page";
     private static final String SIZE_PARAM = "size";
+    private static final String BEFORE_PARAM = "before";
+    private static final String AFTER_PARAM = "after";
+    private static final String WAIT_PARAM = "wait";
+    private static final long MAX_WAIT = 60; //seconds
     private static final String DEFAULT_PAGE_VALUE = "0";
     private static final String DEFAULT_SIZE_VALUE = "40";
 
     private final ConversationService conversationService;
+    private final StreamService streamService;
 
     @PostMapping("/conversations")
-    public GetConversationDto createConversation(@RequestBody CreateConversationDto createConversationDto) {
+    public GetConversationDto createConversation(
+            @RequestBody CreateConversationDto createConversationDto,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
         Set<Long> receiverIds = createConversationDto.getReceivers();
         String name = createConversationDto.getName();
         String text = createConversationDto.getText();
-        return conversationService.createConversation(receiverIds, name, text);
+        return conversationService.createConversation(receiverIds, name, text, isMinimal(prefer));
     }
 
     @GetMapping("/conversations/{conversationId}")
     public GetConversationDto getConversation(
             @PathVariable("conversationId") Long conversationId,
             @RequestParam(value = PAGE_PARAM, required = false, defaultValue = DEFAULT_PAGE_VALUE) int page,
-            @RequestParam(value = SIZE_PARAM, required = false, defaultValue = DEFAULT_SIZE_VALUE) int size) {
+            @RequestParam(value = SIZE_PARAM, required = false, defaultValue = DEFAULT_SIZE_VALUE) int size,
+            @RequestParam(value = BEFORE_PARAM, required = false) Cursor before,
+            @RequestParam(value = AFTER_PARAM, required = false) Cursor after,
+            WebRequest webRequest) {
         if (size > MAX_PAGE_SIZE) {
             throw new IllegalArgumentException("Page size must not be larger than " + MAX_PAGE_SIZE + "!");
         }
 
+        String version = conversationService.getConversationVersion(conversationId);
+
+        if (version != null && webRequest.checkNotModified(version)) {
+            return null;
+        }
+
+        if (before != null || after != null) {
+            return conversationService.getConversation(conversationId, before, after, size);
+        }
+
         return conversationService.getConversation(conversationId, page, size);
     }
 
     @GetMapping("/conversations")
     public GetConversationsDto getConversationsByParticipant(
             @RequestParam(value = PAGE_PARAM, required = false, defaultValue = DEFAULT_PAGE_VALUE) int page,
-            @RequestParam(value = SIZE_PARAM, required = false, defaultValue = DEFAULT_SIZE_VALUE) int size) {
+            @RequestParam(value = SIZE_PARAM, required = false, defaultValue = DEFAULT_SIZE_VALUE) int size,
+            @RequestParam(value = AFTER_PARAM, required = false) Cursor after,
+            WebRequest webRequest) {
         if (size > MAX_PAGE_SIZE) {
             throw new IllegalArgumentException("Page size must not be larger than " + MAX_PAGE_SIZE + "!");
         }
 
+        if (webRequest.checkNotModified(conversationService.getInboxVersion())) {
+            return null;
+        }
+
+        if (after != null) {
+            return conversationService.getConversationsAttended(after, size);
+        }
+
         return conversationService.getConversationsAttended(page, size);
     }
 
     @RequestMapping(value="/conversations", method = HEAD)
     public ResponseEntity countConversations() {
         long result = conversationService.countUpdatedConversationsPerParticipant();
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(COUNT_HEADER, String.valueOf(result));
-        return ResponseEntity.ok().headers(headers).build();
+        return buildCountResponse(result);
+    }
+
+    /**
+     * Long-poll variant of {@link #countConversations()}. If the count still matches the "If-None-Match" tag,
+     * the request is parked until the caller's unread state changes, or answered with 304 after the wait.
+     */
+    @RequestMapping(value="/conversations", method = HEAD, params = WAIT_PARAM)
+    public DeferredResult<ResponseEntity> awaitConversationsCount(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam(WAIT_PARAM) long wait) {
+        if (wait < 0 || wait > MAX_WAIT) {
+            throw new IllegalArgumentException("Wait must be between 0 and " + MAX_WAIT + " seconds!");
+        }
+
+        //subscribes before counting, so that a change in between is not missed
+        CompletableFuture<Long> change = streamService.awaitUnreadCount();
+        long count = conversationService.countUpdatedConversationsPerParticipant();
+        String eTag = buildETag(count);
+
+        if (wait == 0 || !matches(ifNoneMatch, eTag)) {
+            change.cancel(false);
+            DeferredResult<ResponseEntity> result = new DeferredResult<>();
+            result.setResult(buildCountResponse(count));
+            return result;
+        }
+
+        DeferredResult<ResponseEntity> result = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(wait), ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build());
+        result.onCompletion(() -> change.cancel(false));
+        change.thenAccept(newCount -> result.setResult(buildCountResponse(newCount)));
+        return result;
     }
 
     @PostMapping("/conversations/{conversationId}/messages")
     public GetConversationDto addMessage(
             @PathVariable("conversationId") Long conversationId,
-            @RequestBody AddMessageDto addMessageDto) {
+            @RequestBody AddMessageDto addMessageDto,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
         String text = addMessageDto.getText();
-        return conversationService.addMessage(conversationId, text);
+        return conversationService.addMessage(conversationId, text, isMinimal(prefer));
     }
 
     @PostMapping("/conversations/{conversationId}/participants")
     public GetConversationDto addParticipants(
             @PathVariable("conversationId") Long conversationId,
-            @RequestBody AddParticipantsDto addParticipantsDto) {
+            @RequestBody AddParticipantsDto addParticipantsDto,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
         Set<Long> subjectIds = addParticipantsDto.getParticipants();
-        return conversationService.addParticipants(conversationId, subjectIds);
+        return conversationService.addParticipants(conversationId, subjectIds, isMinimal(prefer));
     }
 
     @DeleteMapping("/conversations/{conversationId}/participants/{subjectId}")
     public GetConversationDto removeParticipant(
             @PathVariable("conversationId") Long conversationId,
-            @PathVariable("subjectId") Long subjectId) {
-        return conversationService.removeParticipant(conversationId, subjectId);
+            @PathVariable("subjectId") Long subjectId,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
+        return conversationService.removeParticipant(conversationId, subjectId, isMinimal(prefer));
     }
 
     @PatchMapping("/conversations/{conversationId}/name")
     public GetConversationDto renameConversation(
             @PathVariable("conversationId") Long conversationId,
-            @RequestBody UpdateConversationNameDto updateConversationNameDto) {
-        return conversationService.rename(conversationId, updateConversationNameDto.getName());
+            @RequestBody UpdateConversationNameDto updateConversationNameDto,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
+        return conversationService.rename(conversationId, updateConversationNameDto.getName(), isMinimal(prefer));
     }
 
     @PostMapping("/conversations/{conversationId}/read")
     public void readMessages(
             @PathVariable("conversationId") Long conversationId,
             @RequestBody ReadMessagesDto readMessagesDto) {
-        List<Long> messageIds = readMessagesDto.getMessages();
+        String upTo = readMessagesDto.getUpTo();
+        List<Long> messageIds = upTo != null ?
+                Collections.singletonList(Cursor.parse(upTo).getId()) : readMessagesDto.getMessages();
         conversationService.markMessagesAsRead(conversationId, messageIds);
     }
 
+    @GetMapping(value = "/stream", produces = TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return streamService.subscribe();
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(INTERNAL_SERVER_ERROR)
     public String returnInternalError(Exception e) {
         return processException(e);
     }
 
-    @ExceptionHandler(IllegalArgumentException.class)
+    @ExceptionHandler({IllegalArgumentException.class, TypeMismatchException.class})
     @ResponseStatus(BAD_REQUEST)
     public String returnBadRequest(Exception e) {
         return processException(e);
@@ -145,6 +225,30 @@ public class ConversationController {
         return processException(e);
     }
 
+    //with "Prefer: return=minimal" a mutation returns the messages it has created instead of the latest page
+    private boolean isMinimal(String prefer) {
+        return prefer != null && Arrays.stream(prefer.split("[,;]"))
+                .map(String::trim)
+                .anyMatch(RETURN_MINIMAL_PREFERENCE::equalsIgnoreCase);
+    }
+
+    private ResponseEntity buildCountResponse(long count) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(COUNT_HEADER, String.valueOf(count));
+        return ResponseEntity.ok().headers(headers).eTag(buildETag(count)).build();
+    }
+
+    private String buildETag(long count) {
+        return "\"" + count + "\"";
+    }
+
+    private boolean matches(String ifNoneMatch, String eTag) {
+        return ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(eTag::equals);
+    }
+
     private String processException(Exception e) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
@@ -0,0 +1,14 @@
+package club.tempvs.message.converter;
+
+import club.tempvs.message.model.Cursor;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CursorConverter implements Converter<String, Cursor> {
+
+    @Override
+    public Cursor convert(final String cursor) {
+        return Cursor.parse(cursor);
+    }
+}
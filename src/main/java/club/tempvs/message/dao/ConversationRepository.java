@@ -3,30 +3,79 @@ package club.tempvs.message.dao;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Participant;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
 
-    //TODO: replace :participant with :participantId
-    @Query("SELECT c, (SELECT COUNT(m) FROM Message m WHERE (m.conversation = c) AND (c.lastReadOn[:participant] < m.createdDate)) " +
-            "FROM Conversation c " +
-            "WHERE :participant MEMBER OF c.participants " +
-            "GROUP BY c, c.lastMessageCreatedDate " +
-            "ORDER BY c.lastMessageCreatedDate DESC")
-    List<Object[]> findConversationsPerParticipant(@Param("participant") Participant participant, Pageable pageable);
-
-    @Query("SELECT c FROM Conversation c " +
-            "WHERE :author MEMBER OF c.participants AND :receiver MEMBER OF c.participants AND c.type = :type")
-    Conversation findDialogue(@Param("type") Conversation.Type type,
-                              @Param("author") Participant author,
-                              @Param("receiver") Participant receiver);
-
-    @Query("SELECT COUNT(distinct m.conversation) FROM Message m " +
-            "WHERE (m.conversation.lastReadOn[:participant] < m.createdDate) " +
-            "AND (:participant MEMBER OF m.conversation.participants)")
-    long countByNewMessagesPerParticipant(@Param("participant") Participant participant);
+    @Query("SELECT c, r.lastReadOn, r.conversant FROM ReadCursor r, Conversation c LEFT JOIN FETCH c.admin " +
+            "WHERE r.participantId = :participantId AND c.id = r.conversationId " +
+            "ORDER BY r.lastMessageCreatedDate DESC, r.conversationId DESC")
+    List<Object[]> findConversationsPerParticipant(@Param("participantId") Long participantId, Pageable pageable);
+
+    @Query("SELECT c, r.lastReadOn, r.conversant FROM ReadCursor r, Conversation c LEFT JOIN FETCH c.admin " +
+            "WHERE r.participantId = :participantId AND c.id = r.conversationId " +
+            "AND r.lastMessageCreatedDate <= :lastMessageCreatedDate " +
+            "AND (r.lastMessageCreatedDate < :lastMessageCreatedDate " +
+            "OR (r.lastMessageCreatedDate = :lastMessageCreatedDate AND r.conversationId < :conversationId)) " +
+            "ORDER BY r.lastMessageCreatedDate DESC, r.conversationId DESC")
+    List<Object[]> findConversationsPerParticipantAfter(@Param("participantId") Long participantId,
+                                                        @Param("lastMessageCreatedDate") Instant lastMessageCreatedDate,
+                                                        @Param("conversationId") Long conversationId,
+                                                        Pageable pageable);
+
+    @Override
+    @EntityGraph(Conversation.DETAILS_GRAPH)
+    Optional<Conversation> findById(Long id);
+
+    @Query("SELECT CASE WHEN COUNT(c) > 0 THEN TRUE ELSE FALSE END FROM Conversation c JOIN c.participants p " +
+            "WHERE c.id = :conversationId AND p.id = :participantId")
+    boolean existsByIdAndParticipant(@Param("conversationId") Long conversationId,
+                                     @Param("participantId") Long participantId);
+
+    @EntityGraph(Conversation.DETAILS_GRAPH)
+    Conversation findByDialogueKey(String dialogueKey);
+
+    @Query("SELECT COUNT(r) FROM ReadCursor r, Conversation c " +
+            "WHERE r.conversationId = c.id AND r.participantId = :participantId " +
+            "AND r.lastReadOn < c.lastMessageCreatedDate")
+    long countByNewMessagesPerParticipant(@Param("participantId") Long participantId);
+
+    @Query("SELECT c.id FROM Conversation c " +
+            "WHERE (c.lastMessageAuthorId = :participantId OR c.lastMessageSubjectId = :participantId) " +
+            "AND c.id > :conversationId ORDER BY c.id")
+    List<Long> findIdsByLastMessageParticipant(@Param("participantId") Long participantId,
+                                               @Param("conversationId") Long conversationId,
+                                               Pageable pageable);
+
+    @Query("SELECT c.version, r.lastReadOn FROM Conversation c, ReadCursor r " +
+            "WHERE c.id = :conversationId AND r.conversationId = c.id AND r.participantId = :participantId")
+    List<Object[]> findVersion(@Param("conversationId") Long conversationId,
+                               @Param("participantId") Long participantId);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.version = c.version + 1 WHERE c.id IN :conversationIds")
+    int incrementVersions(@Param("conversationIds") Collection<Long> conversationIds);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageAuthorName = :name " +
+            "WHERE c.id IN :conversationIds AND c.lastMessageAuthorId = :participantId")
+    int updateLastMessageAuthorName(@Param("conversationIds") Collection<Long> conversationIds,
+                                    @Param("participantId") Long participantId,
+                                    @Param("name") String name);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageSubjectName = :name " +
+            "WHERE c.id IN :conversationIds AND c.lastMessageSubjectId = :participantId")
+    int updateLastMessageSubjectName(@Param("conversationIds") Collection<Long> conversationIds,
+                                     @Param("participantId") Long participantId,
+                                     @Param("name") String name);
 }
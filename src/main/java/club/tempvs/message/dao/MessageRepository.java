@@ -4,9 +4,42 @@ import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findByConversation(Conversation conversation, Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation = :conversation " +
+            "AND m.createdDate <= :createdDate " +
+            "AND (m.createdDate < :createdDate OR (m.createdDate = :createdDate AND m.id < :id)) " +
+            "ORDER BY m.createdDate DESC, m.id DESC")
+    List<Message> findBefore(@Param("conversation") Conversation conversation,
+                             @Param("createdDate") Instant createdDate,
+                             @Param("id") Long id,
+                             Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation = :conversation " +
+            "AND m.createdDate >= :createdDate " +
+            "AND (m.createdDate > :createdDate OR (m.createdDate = :createdDate AND m.id > :id)) " +
+            "ORDER BY m.createdDate ASC, m.id ASC")
+    List<Message> findAfter(@Param("conversation") Conversation conversation,
+                            @Param("createdDate") Instant createdDate,
+                            @Param("id") Long id,
+                            Pageable pageable);
+
+    @Query("SELECT m.conversation.id, COUNT(m) FROM Message m, ReadCursor r " +
+            "WHERE m.conversation.id IN :conversationIds AND r.conversationId = m.conversation.id " +
+            "AND r.participantId = :participantId AND m.createdDate > r.lastReadOn " +
+            "GROUP BY m.conversation.id")
+    List<Object[]> countUnreadMessages(@Param("participantId") Long participantId,
+                                       @Param("conversationIds") Collection<Long> conversationIds);
+
+    @Query("SELECT COUNT(m), MIN(m.conversation.id), MAX(m.conversation.id), MAX(m.createdDate) " +
+            "FROM Message m WHERE m.id IN :ids")
+    List<Object[]> aggregateByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,20 @@
+package club.tempvs.message.dao;
+
+import org.hibernate.EmptyInterceptor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Lets Hibernate tell detached {@link Persistable} entities with assigned ids from new ones without a select,
+ * e.g. a cached participant referenced by a new message.
+ */
+public class PersistableInterceptor extends EmptyInterceptor {
+
+    @Override
+    public Boolean isTransient(Object entity) {
+        if (entity instanceof Persistable) {
+            return ((Persistable<?>) entity).isNew();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package club.tempvs.message.dao;
+
+import club.tempvs.message.domain.ReadCursor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ReadCursorRepository extends JpaRepository<ReadCursor, ReadCursor.Key> {
+
+    @Query("SELECT r.lastReadOn FROM ReadCursor r " +
+            "WHERE r.conversationId = :conversationId AND r.participantId = :participantId")
+    Instant findLastReadOn(@Param("conversationId") Long conversationId,
+                           @Param("participantId") Long participantId);
+
+    @Modifying
+    @Query("UPDATE ReadCursor r SET r.lastReadOn = :lastReadOn " +
+            "WHERE r.conversationId = :conversationId AND r.participantId = :participantId " +
+            "AND r.lastReadOn <= :lastReadOn")
+    int advanceLastReadOn(@Param("conversationId") Long conversationId,
+                          @Param("participantId") Long participantId,
+                          @Param("lastReadOn") Instant lastReadOn);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM ReadCursor r WHERE r.conversationId = :conversationId ORDER BY r.participantId")
+    List<ReadCursor> findForUpdate(@Param("conversationId") Long conversationId);
+
+    @Modifying
+    @Query("UPDATE ReadCursor r SET r.unread = FALSE " +
+            "WHERE r.conversationId = :conversationId AND r.participantId = :participantId AND r.unread = TRUE " +
+            "AND r.lastMessageCreatedDate <= r.lastReadOn")
+    int clearUnread(@Param("conversationId") Long conversationId,
+                    @Param("participantId") Long participantId);
+
+    @Query("SELECT r.conversationId FROM ReadCursor r " +
+            "WHERE r.participantId = :participantId AND r.conversationId > :conversationId ORDER BY r.conversationId")
+    List<Long> findConversationIds(@Param("participantId") Long participantId,
+                                   @Param("conversationId") Long conversationId,
+                                   Pageable pageable);
+
+    @Query("SELECT r.conversationId, p FROM ReadCursor r, Participant p " +
+            "WHERE p.id = r.participantId AND r.conversationId IN :conversationIds")
+    List<Object[]> findMembers(@Param("conversationIds") Collection<Long> conversationIds);
+
+    @Modifying
+    @Query("UPDATE ReadCursor r SET r.conversant = :conversant " +
+            "WHERE r.conversationId = :conversationId AND r.participantId = :participantId")
+    int updateConversant(@Param("conversationId") Long conversationId,
+                         @Param("participantId") Long participantId,
+                         @Param("conversant") String conversant);
+
+    @Modifying
+    @Query(value = "UPDATE read_cursor SET " +
+            "last_message_created_date = " +
+            "(SELECT c.last_message_created_date FROM conversation c WHERE c.id = read_cursor.conversation_id), " +
+            "unread = COALESCE(last_read_on < " +
+            "(SELECT c.last_message_created_date FROM conversation c WHERE c.id = read_cursor.conversation_id), FALSE)",
+            nativeQuery = true)
+    int refresh();
+}
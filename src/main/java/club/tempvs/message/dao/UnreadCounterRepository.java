@@ -0,0 +1,53 @@
+package club.tempvs.message.dao;
+
+import club.tempvs.message.domain.UnreadCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, Long> {
+
+    @Modifying
+    @Query("UPDATE UnreadCounter u SET u.unreadConversations = u.unreadConversations + 1 " +
+            "WHERE u.participantId IN :participantIds")
+    int increment(@Param("participantIds") Collection<Long> participantIds);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter u SET u.unreadConversations = u.unreadConversations - 1 " +
+            "WHERE u.participantId = :participantId AND u.unreadConversations > 0")
+    int decrement(@Param("participantId") Long participantId);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter u SET u.inboxVersion = u.inboxVersion + 1 " +
+            "WHERE u.participantId IN :participantIds")
+    int incrementInboxVersions(@Param("participantIds") Collection<Long> participantIds);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter u SET u.inboxVersion = u.inboxVersion + 1 WHERE u.participantId IN " +
+            "(SELECT r.participantId FROM ReadCursor r WHERE r.conversationId IN :conversationIds)")
+    int incrementInboxVersionsOfMembers(@Param("conversationIds") Collection<Long> conversationIds);
+
+    @Query("SELECT u.inboxVersion FROM UnreadCounter u WHERE u.participantId = :participantId")
+    Long findInboxVersion(@Param("participantId") Long participantId);
+
+    @Modifying
+    @Query(value = "INSERT INTO unread_counter (participant_id, unread_conversations) " +
+            "SELECT p.id, 0 FROM participant p " +
+            "WHERE NOT EXISTS (SELECT 1 FROM unread_counter u WHERE u.participant_id = p.id)", nativeQuery = true)
+    int insertMissing();
+
+    @Modifying
+    @Query(value = "INSERT INTO unread_counter (participant_id, unread_conversations) " +
+            "SELECT p.id, 0 FROM participant p WHERE p.id IN :participantIds " +
+            "AND NOT EXISTS (SELECT 1 FROM unread_counter u WHERE u.participant_id = p.id)", nativeQuery = true)
+    int insertMissing(@Param("participantIds") Collection<Long> participantIds);
+
+    @Modifying
+    @Query(value = "UPDATE unread_counter SET unread_conversations = " +
+            "(SELECT COUNT(*) FROM read_cursor r WHERE r.participant_id = unread_counter.participant_id AND r.unread = TRUE)",
+            nativeQuery = true)
+    int recount();
+}
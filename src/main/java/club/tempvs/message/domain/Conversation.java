@@ -2,13 +2,12 @@ package club.tempvs.message.domain;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
-import static javax.persistence.CascadeType.ALL;
-import static javax.persistence.FetchType.EAGER;
 
 import javax.persistence.*;
-import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.time.Instant;
@@ -17,9 +16,16 @@ import java.util.*;
 @Data
 @Entity
 @EqualsAndHashCode(of = {"id"})
+@ToString(exclude = {"participants"})
 @EntityListeners(AuditingEntityListener.class)
+@NamedEntityGraph(name = Conversation.DETAILS_GRAPH, attributeNodes = {
+        @NamedAttributeNode("participants"),
+        @NamedAttributeNode("admin")
+})
 public class Conversation {
 
+    public static final String DETAILS_GRAPH = "Conversation.details";
+
     @Id
     @GeneratedValue
     private Long id;
@@ -28,37 +34,33 @@ public class Conversation {
     @NotNull
     private Type type;
 
-    @NotEmpty
-    @OrderColumn
-    @OneToMany(cascade = ALL)
-    private List<Message> messages = new ArrayList<>();
+    private String dialogueKey;
 
     @OneToOne
     private Participant admin;
 
     private String lastMessageText;
+    private Long lastMessageAuthorId;
     private String lastMessageAuthorName;
+    private Long lastMessageSubjectId;
     private String lastMessageSubjectName;
     private Instant lastMessageCreatedDate;
     private Boolean lastMessageSystem;
     private String lastMessageSystemArgs;
 
     @Size(min = 2, max = 20)
-    @ManyToMany(fetch = EAGER)
+    @BatchSize(size = 40)
+    @ManyToMany
     private Set<Participant> participants = new LinkedHashSet<>();
 
-    //TODO: replace with separate table + separate query
-    @ElementCollection
-    private Map<Participant, Instant> lastReadOn = new HashMap<>();
-
     @CreatedDate
     private Instant createdDate;
 
-    private transient Long unreadMessagesCount;
+    //bumped in place by ConversationRepository, never written from the entity
+    @Column(insertable = false, updatable = false)
+    private Long version;
 
-    public void addMessage(Message message) {
-        this.messages.add(message);
-    }
+    private transient Long unreadMessagesCount;
 
     public void addParticipant(Participant participant) {
         this.participants.add(participant);
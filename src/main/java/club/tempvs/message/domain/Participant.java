@@ -1,9 +1,15 @@
 package club.tempvs.message.domain;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
@@ -14,9 +20,12 @@ import java.time.Instant;
 @Data
 @Entity
 @EqualsAndHashCode(of = {"id"})
+@ToString(exclude = {"persisted"})
 @NoArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
-public class Participant {
+//former members referenced by a page of messages are loaded with one select instead of one each
+@BatchSize(size = 40)
+public class Participant implements Persistable<Long> {
 
     @Id
     private Long id;
@@ -32,10 +41,27 @@ public class Participant {
     @CreatedDate
     private Instant createdDate;
 
+    //ids are assigned by the profile service, so new participants are told apart by this flag instead of a select
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
     public Participant(Long id, String name, String type, String period) {
         this.id = id;
         this.name = name;
         this.type = type;
         this.period = period;
     }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
 }
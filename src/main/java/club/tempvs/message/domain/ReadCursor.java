@@ -0,0 +1,96 @@
+package club.tempvs.message.domain;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Read position of a participant within a conversation.
+ * A row exists for every member of a conversation and is removed together with the membership.
+ */
+@Data
+@Entity
+@EqualsAndHashCode(exclude = {"persisted"})
+@ToString(exclude = {"persisted"})
+@NoArgsConstructor
+@IdClass(ReadCursor.Key.class)
+public class ReadCursor implements Persistable<ReadCursor.Key> {
+
+    @Id
+    private Long conversationId;
+
+    @Id
+    private Long participantId;
+
+    @NotNull
+    private Instant lastReadOn;
+
+    /**
+     * Whether the conversation is counted in the participant's {@link UnreadCounter}.
+     */
+    @NotNull
+    private Boolean unread;
+
+    /**
+     * Copy of {@link Conversation#getLastMessageCreatedDate()} so that the inbox can be paged by this table's index alone.
+     */
+    private Instant lastMessageCreatedDate;
+
+    /**
+     * Names of the other members as shown in this participant's inbox.
+     * Rebuilt on every message and refreshed in the background when a member is renamed.
+     */
+    private String conversant;
+
+    //the key is assigned, so new cursors are told apart by this flag instead of a select per cursor on save
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    public ReadCursor(Long conversationId, Long participantId, Instant lastReadOn, Boolean unread,
+                      Instant lastMessageCreatedDate, String conversant) {
+        this.conversationId = conversationId;
+        this.participantId = participantId;
+        this.lastReadOn = lastReadOn;
+        this.unread = unread;
+        this.lastMessageCreatedDate = lastMessageCreatedDate;
+        this.conversant = conversant;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(conversationId, participantId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private Long conversationId;
+        private Long participantId;
+    }
+}
@@ -0,0 +1,36 @@
+package club.tempvs.message.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Number of conversations with unread messages per participant.
+ * Kept in sync with the {@link ReadCursor#getUnread()} flags and rebuilt from them on reconciliation.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnreadCounter {
+
+    @Id
+    private Long participantId;
+
+    @NotNull
+    private Long unreadConversations;
+
+    //bumped in place by UnreadCounterRepository, never written from the entity
+    @Column(insertable = false, updatable = false)
+    private Long inboxVersion;
+
+    public UnreadCounter(Long participantId, Long unreadConversations) {
+        this.participantId = participantId;
+        this.unreadConversations = unreadConversations;
+    }
+}
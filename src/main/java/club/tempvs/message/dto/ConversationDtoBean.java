@@ -1,12 +1,12 @@
 package club.tempvs.message.dto;
 
 import club.tempvs.message.domain.Conversation;
-import club.tempvs.message.domain.Participant;
+import club.tempvs.message.model.Cursor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
-import java.util.stream.Collectors;
+import java.time.Instant;
 
 @Data
 @NoArgsConstructor
@@ -19,14 +19,15 @@ public class ConversationDtoBean {
     private MessageDtoBean lastMessage;
     private String conversant;
     private Long unreadMessagesCount;
+    private String cursor;
 
-    public ConversationDtoBean(Conversation conversation, Participant self, String zoneId) {
+    public ConversationDtoBean(Conversation conversation, String conversant, Instant lastReadOn, String zoneId) {
         this.id = conversation.getId();
         this.name = conversation.getName();
         this.type = conversation.getType().toString();
-        this.lastMessage = new MessageDtoBean(self, conversation, zoneId);
-        this.conversant = conversation.getParticipants().stream().filter(participant -> !participant.equals(self))
-                .map(Participant::getName).collect(Collectors.joining(", "));
+        this.lastMessage = new MessageDtoBean(conversation, lastReadOn, zoneId);
+        this.conversant = conversant;
         this.unreadMessagesCount = conversation.getUnreadMessagesCount();
+        this.cursor = new Cursor(conversation.getLastMessageCreatedDate(), conversation.getId()).toString();
     }
 }
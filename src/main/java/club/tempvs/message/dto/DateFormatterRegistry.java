@@ -0,0 +1,53 @@
+package club.tempvs.message.dto;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares the short date-time formatters used to render message dates, one per locale and time zone,
+ * instead of resolving the zone and building a formatter for every rendered message. Both keys come
+ * from the User-Info header, so the number of cached formatters is capped.
+ */
+final class DateFormatterRegistry {
+
+    private static final int MAX_FORMATTERS = 1_000;
+    private static final Map<Locale, Map<String, DateTimeFormatter>> FORMATTERS = new ConcurrentHashMap<>();
+
+    private DateFormatterRegistry() {
+    }
+
+    static String format(Instant instant, Locale locale, String zoneId) {
+        Map<String, DateTimeFormatter> formattersPerZone = FORMATTERS.get(locale);
+
+        if (formattersPerZone == null) {
+            if (FORMATTERS.size() >= MAX_FORMATTERS) {
+                return buildFormatter(locale, zoneId).format(instant);
+            }
+
+            formattersPerZone = FORMATTERS.computeIfAbsent(locale, key -> new ConcurrentHashMap<>());
+        }
+
+        DateTimeFormatter formatter = formattersPerZone.get(zoneId);
+
+        if (formatter == null) {
+            formatter = buildFormatter(locale, zoneId);
+
+            if (formattersPerZone.size() < MAX_FORMATTERS) {
+                formattersPerZone.putIfAbsent(zoneId, formatter);
+            }
+        }
+
+        return formatter.format(instant);
+    }
+
+    private static DateTimeFormatter buildFormatter(Locale locale, String zoneId) {
+        return DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
+                .withLocale(locale)
+                .withZone(ZoneId.of(zoneId));
+    }
+}
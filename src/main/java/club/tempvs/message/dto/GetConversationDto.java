@@ -5,6 +5,7 @@ import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
 import lombok.Data;
 
+import java.time.Instant;
 import java.util.*;
 
 import static java.util.stream.Collectors.*;
@@ -19,7 +20,7 @@ public class GetConversationDto {
     private Set<ParticipantDto> participants;
     private List<MessageDtoBean> messages;
 
-    public GetConversationDto(Conversation conversation, List<Message> messages, Participant self, String zoneId) {
+    public GetConversationDto(Conversation conversation, List<Message> messages, Instant lastReadOn, String zoneId) {
         Participant admin = conversation.getAdmin();
         Collections.reverse(messages);
 
@@ -31,7 +32,7 @@ public class GetConversationDto {
                 .map(ParticipantDto::new)
                 .collect(toSet());
         this.messages = messages.stream()
-                .map(message -> new MessageDtoBean(message, self, conversation, zoneId))
+                .map(message -> new MessageDtoBean(message, lastReadOn, zoneId))
                 .collect(toList());
     }
 }
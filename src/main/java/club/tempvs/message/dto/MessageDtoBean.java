@@ -5,14 +5,11 @@ import static org.apache.commons.lang.StringUtils.isNotBlank;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
+import club.tempvs.message.model.Cursor;
 import lombok.Data;
 import org.springframework.context.i18n.LocaleContextHolder;
 
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
 
 @Data
 public class MessageDtoBean {
@@ -24,10 +21,10 @@ public class MessageDtoBean {
     private String createdDate;
     private Boolean unread;
     private Boolean system;
+    private String cursor;
 
-    public MessageDtoBean(Message message, Participant participant, Conversation conversation, String zoneId) {
+    public MessageDtoBean(Message message, Instant lastReadOn, String zoneId) {
         Participant subject = message.getSubject();
-        Instant lastReadOn = conversation.getLastReadOn().getOrDefault(participant, Instant.MIN);
 
         this.id = message.getId();
         this.text = message.getText();
@@ -36,11 +33,11 @@ public class MessageDtoBean {
         this.createdDate = parseDate(message.getCreatedDate(), zoneId);
         this.unread = message.getCreatedDate().isAfter(lastReadOn);
         this.system = message.getIsSystem();
+        this.cursor = new Cursor(message).toString();
     }
 
-    public MessageDtoBean(Participant participant, Conversation conversation, String zoneId) {
+    public MessageDtoBean(Conversation conversation, Instant lastReadOn, String zoneId) {
         String subjectName = conversation.getLastMessageSubjectName();
-        Instant lastReadOn = conversation.getLastReadOn().getOrDefault(participant, Instant.MIN);
 
         this.text = conversation.getLastMessageText();
         this.author = new ParticipantDto(conversation.getLastMessageAuthorName());
@@ -51,9 +48,6 @@ public class MessageDtoBean {
     }
 
     private String parseDate(Instant instant, String zoneId) {
-        ZonedDateTime zonedDateTime = instant.atZone(ZoneId.of(zoneId));
-        DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
-                .withLocale(LocaleContextHolder.getLocale());
-        return zonedDateTime.format(formatter);
+        return DateFormatterRegistry.format(instant, LocaleContextHolder.getLocale(), zoneId);
     }
 }
@@ -7,4 +7,8 @@ import java.util.List;
 @Data
 public class ReadMessagesDto {
     private List<Long> messages;
+    /**
+     * Cursor of the latest message read, an alternative to listing the messages.
+     */
+    private String upTo;
 }
@@ -0,0 +1,29 @@
+package club.tempvs.message.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StreamEventDto {
+
+    private Long conversationId;
+    private String name;
+    private Long count;
+
+    public static StreamEventDto ofConversation(Long conversationId) {
+        return new StreamEventDto(conversationId, null, null);
+    }
+
+    public static StreamEventDto ofName(Long conversationId, String name) {
+        return new StreamEventDto(conversationId, name, null);
+    }
+
+    public static StreamEventDto ofCount(Long count) {
+        return new StreamEventDto(null, null, count);
+    }
+}
@@ -1,31 +1,28 @@
 package club.tempvs.message.interceptor;
 
 import club.tempvs.message.api.UnauthorizedException;
-import org.springframework.beans.factory.annotation.Value;
+import club.tempvs.message.auth.CredentialVerifier;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
-import org.springframework.util.DigestUtils;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 @Component
+@RequiredArgsConstructor
 public class AuthInterceptor implements HandlerInterceptor {
 
     private static final String AUTHORIZATION_HEADER = "Authorization";
-    private static final String CHAR_ENCODING = "UTF-8";
 
-    @Value("${authorization.token}")
-    private String token;
+    private final CredentialVerifier credentialVerifier;
 
     @Override
     public boolean preHandle(
             HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         String authHeaderValue = request.getHeader(AUTHORIZATION_HEADER);
-        byte[] tokenBytes = token.getBytes(CHAR_ENCODING);
-        String tokenHash = DigestUtils.md5DigestAsHex(tokenBytes);
 
-        if (authHeaderValue == null || !authHeaderValue.equals(tokenHash)) {
+        if (!credentialVerifier.verify(authHeaderValue)) {
             throw new UnauthorizedException("Authentication failed. Wrong token is received.");
         }
 
@@ -1,9 +1,8 @@
 package club.tempvs.message.interceptor;
 
-import club.tempvs.message.dto.UserInfoDto;
 import club.tempvs.message.holder.UserHolder;
 import club.tempvs.message.model.User;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import club.tempvs.message.util.UserInfoParser;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Component;
@@ -18,7 +17,7 @@ public class UserInfoInterceptor implements HandlerInterceptor {
 
     private static final String USER_INFO_HEADER = "User-Info";
 
-    private final ObjectMapper objectMapper;
+    private final UserInfoParser userInfoParser;
     private final UserHolder userHolder;
 
     @Override
@@ -26,13 +25,11 @@ public class UserInfoInterceptor implements HandlerInterceptor {
         String userInfoHeaderValue = request.getHeader(USER_INFO_HEADER);
         response.setHeader(USER_INFO_HEADER, userInfoHeaderValue);
 
-        try {
-            UserInfoDto userInfoDto = objectMapper.readValue(userInfoHeaderValue, UserInfoDto.class);
-            User user = new User(userInfoDto);
+        User user = userInfoParser.parse(userInfoHeaderValue);
+
+        if (user != null) {
             userHolder.setUser(user);
             LocaleContextHolder.setLocale(user.getLocale());
-        } catch (Exception e) {
-            //do nothing
         }
 
         return true;
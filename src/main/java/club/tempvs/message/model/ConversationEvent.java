@@ -0,0 +1,24 @@
+package club.tempvs.message.model;
+
+import club.tempvs.message.dto.StreamEventDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A stream event addressed to the given participants, wherever they are connected.
+ * An "unread" event carries no data, every node looks up the counts of its own subscribers.
+ * A "participants" event isn't streamed, it tells every node that the given participants have changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationEvent {
+
+    private Long conversationId;
+    private List<Long> participantIds;
+    private String type;
+    private StreamEventDto data;
+}
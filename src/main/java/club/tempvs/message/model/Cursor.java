@@ -0,0 +1,46 @@
+package club.tempvs.message.model;
+
+import club.tempvs.message.domain.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Keyset position within a list ordered by (createdDate, id). Serialized as "{ISO instant},{id}".
+ */
+@Data
+@AllArgsConstructor
+public class Cursor {
+
+    private static final String SEPARATOR = ",";
+
+    private Instant createdDate;
+    private Long id;
+
+    public Cursor(Message message) {
+        this(message.getCreatedDate(), message.getId());
+    }
+
+    public static Cursor parse(String value) {
+        int separatorIndex = value.lastIndexOf(SEPARATOR);
+
+        if (separatorIndex < 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + value);
+        }
+
+        try {
+            Instant createdDate = Instant.parse(value.substring(0, separatorIndex));
+            Long id = Long.valueOf(value.substring(separatorIndex + 1));
+            return new Cursor(createdDate, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + value, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createdDate + SEPARATOR + id;
+    }
+}
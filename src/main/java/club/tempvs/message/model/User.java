@@ -3,26 +3,27 @@ package club.tempvs.message.model;
 import static java.util.Objects.nonNull;
 
 import club.tempvs.message.dto.UserInfoDto;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
 import java.util.Locale;
 
-@Data
-@NoArgsConstructor
+@Getter
+@ToString
+@EqualsAndHashCode
 public class User {
 
-    private Long profileId;
-    private Long userProfileId;
-    private String userName;
-    private String timezone;
-    private Locale locale;
+    private final Long profileId;
+    private final Long userProfileId;
+    private final String userName;
+    private final String timezone;
+    private final Locale locale;
 
     public User(UserInfoDto userInfoDto) {
         this.profileId = userInfoDto.getProfileId();
         this.userProfileId = userInfoDto.getUserProfileId();
         this.userName = userInfoDto.getUserName();
-        this.timezone = userInfoDto.getTimezone();
         this.timezone = nonNull(userInfoDto.getTimezone()) ? userInfoDto.getTimezone() : "UTC";
         this.locale = new Locale(userInfoDto.getLang());
     }
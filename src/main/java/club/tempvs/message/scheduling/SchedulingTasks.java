@@ -1,6 +1,7 @@
 package club.tempvs.message.scheduling;
 
 import club.tempvs.message.amqp.ParticipantSynchronizer;
+import club.tempvs.message.service.UnreadCounterService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -12,10 +13,17 @@ import org.springframework.stereotype.Component;
 public class SchedulingTasks {
 
     private final ParticipantSynchronizer participantSynchronizer;
+    private final UnreadCounterService unreadCounterService;
 
-    //runs every 30 seconds
+    //subscribes to participant updates, retries every 30 seconds until the first connection succeeds
     @Scheduled(fixedRate = 30 * 1000)
     public void refreshParticipants() {
         participantSynchronizer.execute();
     }
+
+    //runs daily at 4 AM
+    @Scheduled(cron = "0 0 4 * * *")
+    public void rebuildUnreadCounters() {
+        unreadCounterService.rebuildUnreadCounters();
+    }
 }
@@ -2,27 +2,36 @@ package club.tempvs.message.service;
 
 import club.tempvs.message.dto.GetConversationDto;
 import club.tempvs.message.dto.GetConversationsDto;
+import club.tempvs.message.model.Cursor;
 
 import java.util.List;
 import java.util.Set;
 
 public interface ConversationService {
 
-    GetConversationDto createConversation(Set<Long> receiverIds, String name, String text);
+    GetConversationDto createConversation(Set<Long> receiverIds, String name, String text, boolean minimal);
 
     GetConversationDto getConversation(Long id, int page, int size);
 
+    GetConversationDto getConversation(Long id, Cursor before, Cursor after, int size);
+
     GetConversationsDto getConversationsAttended(int page, int size);
 
-    GetConversationDto addMessage(Long conversationId, String text);
+    GetConversationsDto getConversationsAttended(Cursor after, int size);
+
+    String getConversationVersion(Long conversationId);
+
+    String getInboxVersion();
+
+    GetConversationDto addMessage(Long conversationId, String text, boolean minimal);
 
-    GetConversationDto removeParticipant(Long conversationId, Long removedId);
+    GetConversationDto removeParticipant(Long conversationId, Long removedId, boolean minimal);
 
-    GetConversationDto addParticipants(Long conversationId, Set<Long> subjectIds);
+    GetConversationDto addParticipants(Long conversationId, Set<Long> subjectIds, boolean minimal);
 
     long countUpdatedConversationsPerParticipant();
 
-    GetConversationDto rename(Long conversationId, String name);
+    GetConversationDto rename(Long conversationId, String name, boolean minimal);
 
     void markMessagesAsRead(Long conversationId, List<Long> messageIds);
 }
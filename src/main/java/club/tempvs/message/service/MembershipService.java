@@ -0,0 +1,8 @@
+package club.tempvs.message.service;
+
+public interface MembershipService {
+
+    boolean isMember(Long conversationId, Long participantId);
+
+    void evict(Long conversationId, Long participantId);
+}
@@ -3,8 +3,11 @@ package club.tempvs.message.service;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
+import club.tempvs.message.model.Cursor;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface MessageService {
@@ -12,9 +15,21 @@ public interface MessageService {
     Message createMessage(Participant author, Set<Participant> receivers,
                           String text, Boolean isSystem, String systemArgs, Participant subject);
 
-    Conversation addMessage(Conversation conversation, Message message, Participant author);
+    Conversation addMessage(Conversation conversation, Message message);
+
+    List<Message> saveMessages(List<Message> messages);
 
     List<Message> getMessagesFromConversation(Conversation conversation, int page, int size);
 
+    List<Message> getMessagesBefore(Conversation conversation, Cursor cursor, int size);
+
+    List<Message> getMessagesAfter(Conversation conversation, Cursor cursor, int size);
+
     List<Message> findMessagesByIds(List<Long> ids);
+
+    Instant getLastCreatedDate(Long conversationId, List<Long> ids);
+
+    Map<Long, Long> countUnreadMessages(Participant participant, List<Conversation> conversations);
+
+    Long refreshLastMessageNames(Participant participant, Long afterConversationId, int limit);
 }
@@ -0,0 +1,10 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.domain.Participant;
+
+import java.util.Collection;
+
+public interface NamePropagationService {
+
+    void propagateNames(Collection<Participant> participants);
+}
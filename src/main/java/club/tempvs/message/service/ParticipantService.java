@@ -2,13 +2,18 @@ package club.tempvs.message.service;
 
 import club.tempvs.message.domain.Participant;
 
+import java.util.Collection;
 import java.util.Set;
 
 public interface ParticipantService {
 
+    String PARTICIPANTS_EVENT = "participants";
+
     Participant getParticipant(Long id);
 
     Set<Participant> getParticipants(Set<Long> ids);
 
     Participant refreshParticipant(Long id, String name, String type, String period);
+
+    void refreshParticipants(Collection<Participant> participants);
 }
@@ -0,0 +1,27 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.domain.Conversation;
+import club.tempvs.message.domain.Message;
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.domain.ReadCursor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+public interface ReadCursorService {
+
+    void createReadCursors(Conversation conversation, Set<Participant> participants, Instant lastReadOn);
+
+    void registerMessage(Conversation conversation, Message message);
+
+    void markAsRead(Long conversationId, Long participantId, Instant lastReadOn);
+
+    void markAsRead(Map<ReadCursor.Key, Instant> lastReadOns);
+
+    Instant getLastReadOn(Conversation conversation, Participant participant);
+
+    void deleteReadCursor(Conversation conversation, Participant participant);
+
+    Long refreshConversants(Participant participant, Long afterConversationId, int limit);
+}
@@ -0,0 +1,10 @@
+package club.tempvs.message.service;
+
+import java.time.Instant;
+
+public interface ReadMarkerService {
+
+    void markAsRead(Long conversationId, Long participantId, Instant lastReadOn);
+
+    void flush();
+}
@@ -0,0 +1,23 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.dto.StreamEventDto;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+public interface StreamService {
+
+    String MESSAGE_EVENT = "message";
+    String RENAME_EVENT = "rename";
+    String MEMBERSHIP_EVENT = "membership";
+    String UNREAD_EVENT = "unread";
+
+    SseEmitter subscribe();
+
+    CompletableFuture<Long> awaitUnreadCount();
+
+    void publish(Collection<Long> participantIds, String event, StreamEventDto data);
+
+    void publishUnreadCounts(Collection<Long> participantIds);
+}
@@ -0,0 +1,29 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.domain.Participant;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface UnreadCounterService {
+
+    void createUnreadCounter(Participant participant);
+
+    void createUnreadCounters(Collection<Long> participantIds);
+
+    long getUnreadConversationsCount(Long participantId);
+
+    Map<Long, Long> getUnreadConversationsCounts(Collection<Long> participantIds);
+
+    void increment(Collection<Long> participantIds);
+
+    void decrement(Long participantId);
+
+    void touchInboxes(Collection<Long> participantIds);
+
+    void touchInboxesOfMembers(Collection<Long> conversationIds);
+
+    long getInboxVersion(Long participantId);
+
+    void rebuildUnreadCounters();
+}
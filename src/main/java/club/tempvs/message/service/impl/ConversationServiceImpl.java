@@ -1,7 +1,9 @@
 package club.tempvs.message.service.impl;
 
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.*;
 import static club.tempvs.message.domain.Conversation.Type.*;
+import static club.tempvs.message.service.StreamService.*;
 
 import club.tempvs.message.api.ForbiddenException;
 import club.tempvs.message.dao.ConversationRepository;
@@ -12,11 +14,18 @@ import club.tempvs.message.dto.ConversationDtoBean;
 import club.tempvs.message.dto.ErrorsDto;
 import club.tempvs.message.dto.GetConversationDto;
 import club.tempvs.message.dto.GetConversationsDto;
+import club.tempvs.message.dto.StreamEventDto;
 import club.tempvs.message.holder.UserHolder;
+import club.tempvs.message.model.Cursor;
 import club.tempvs.message.model.User;
 import club.tempvs.message.service.ConversationService;
+import club.tempvs.message.service.MembershipService;
 import club.tempvs.message.service.MessageService;
 import club.tempvs.message.service.ParticipantService;
+import club.tempvs.message.service.ReadCursorService;
+import club.tempvs.message.service.ReadMarkerService;
+import club.tempvs.message.service.StreamService;
+import club.tempvs.message.service.UnreadCounterService;
 import club.tempvs.message.util.LocaleHelper;
 import club.tempvs.message.util.ObjectFactory;
 import club.tempvs.message.util.ValidationHelper;
@@ -26,6 +35,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.*;
@@ -52,28 +62,50 @@ public class ConversationServiceImpl implements ConversationService {
     private final ValidationHelper validationHelper;
     private final ParticipantService participantService;
     private final UserHolder userHolder;
+    private final ReadCursorService readCursorService;
+    private final UnreadCounterService unreadCounterService;
+    private final MembershipService membershipService;
+    private final ReadMarkerService readMarkerService;
+    private final StreamService streamService;
 
     @Override
-    public GetConversationDto createConversation(Set<Long> receiverIds, String name, String text) {
+    @Transactional
+    public GetConversationDto createConversation(Set<Long> receiverIds, String name, String text, boolean minimal) {
         Long authorId = userHolder.getUser().getProfileId();
         Participant author = participantService.getParticipant(authorId);
         Set<Participant> receivers = participantService.getParticipants(receiverIds);
         Message message = messageService.createMessage(author, receivers, text, false, null, null);
         Conversation conversation = buildConversation(author, receivers, name, message);
-        return prepareGetConversationDto(save(conversation), author);
+        return prepareMutationDto(save(conversation, singletonList(message)), singletonList(message), author, minimal);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public GetConversationDto getConversation(Long id, int page, int size) {
         Long callerId = userHolder.getUser().getProfileId();
+        checkMembership(id, callerId);
         Participant caller = participantService.getParticipant(callerId);
         Conversation conversation = findOne(id);
 
-        if (!conversation.getParticipants().contains(caller)) {
-            throw new ForbiddenException("Participant " + callerId + " has no access to conversation " + id);
+        return prepareGetConversationDto(conversation, caller);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public GetConversationDto getConversation(Long id, Cursor before, Cursor after, int size) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of the 'before' and 'after' cursors may be specified");
         }
 
-        return prepareGetConversationDto(conversation, caller);
+        Long callerId = userHolder.getUser().getProfileId();
+        checkMembership(id, callerId);
+        Participant caller = participantService.getParticipant(callerId);
+        Conversation conversation = findOne(id);
+
+        List<Message> messages = before != null ?
+                messageService.getMessagesBefore(conversation, before, size) :
+                messageService.getMessagesAfter(conversation, after, size);
+        return prepareGetConversationDto(conversation, messages, caller);
     }
 
     public Conversation buildConversation(Participant author, Set<Participant> receivers, String name, Message message) {
@@ -84,12 +116,15 @@ public class ConversationServiceImpl implements ConversationService {
         validationHelper.validateConversationCreation(author, receivers, message);
 
         Conversation conversation;
+        Set<Participant> participants = new LinkedHashSet<>(receivers);
+        participants.add(author);
+        String dialogueKey = participants.size() == 2 ? buildDialogueKey(participants) : null;
 
-        if (receivers.size() == 1) {
-            conversation = findDialogue(author, receivers.iterator().next());
+        if (dialogueKey != null) {
+            conversation = conversationRepository.findByDialogueKey(dialogueKey);
 
             if (conversation != null) {
-                return messageService.addMessage(conversation, message, author);
+                return messageService.addMessage(conversation, message);
             }
         }
 
@@ -97,58 +132,75 @@ public class ConversationServiceImpl implements ConversationService {
         receivers.stream().forEach(conversation::addParticipant);
         conversation.addParticipant(author);
         conversation.setName(name);
-        messageService.addMessage(conversation, message, author);
-
-        Map<Participant, Instant> lastReadOn = conversation.getLastReadOn();
-        receivers.stream()
-                .forEach(receiver -> lastReadOn.put(receiver, Instant.EPOCH));
+        messageService.addMessage(conversation, message);
 
         if (conversation.getParticipants().size() > 2) {
             conversation.setAdmin(author);
             conversation.setType(CONFERENCE);
         } else {
             conversation.setType(DIALOGUE);
+            conversation.setDialogueKey(dialogueKey);
         }
 
         return conversation;
     }
 
     @Override
-    public GetConversationDto addMessage(Long conversationId, String text) {
+    @Transactional
+    public GetConversationDto addMessage(Long conversationId, String text, boolean minimal) {
         Long authorId = userHolder.getUser().getProfileId();
         Conversation conversation = findOne(conversationId);
         Participant author = participantService.getParticipant(authorId);
         Set<Participant> receivers = new HashSet<>(conversation.getParticipants());
         receivers.remove(author);
         Message message = messageService.createMessage(author, receivers, text, false, null, null);
-        conversation = messageService.addMessage(conversation, message, author);
-        return prepareGetConversationDto(save(conversation), author);
+        conversation = messageService.addMessage(conversation, message);
+        return prepareMutationDto(save(conversation, singletonList(message)), singletonList(message), author, minimal);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public GetConversationsDto getConversationsAttended(int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
         User user = userHolder.getUser();
         Long participantId = user.getProfileId();
+        return prepareGetConversationsDto(user, getConversationsPerParticipant(participantId, pageable));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public GetConversationsDto getConversationsAttended(Cursor after, int size) {
+        Pageable pageable = PageRequest.of(DEFAULT_PAGE_NUMBER, size);
+        User user = userHolder.getUser();
+        Long participantId = user.getProfileId();
+        return prepareGetConversationsDto(user, getConversationsPerParticipant(participantId, after, pageable));
+    }
+
+    private GetConversationsDto prepareGetConversationsDto(User user, List<Object[]> conversationsPerParticipant) {
         String timeZone = user.getTimezone();
-        Participant participant = participantService.getParticipant(participantId);
-        List<Object[]> conversationsPerParticipant = getConversationsPerParticipant(participant, pageable);
+        Participant participant = participantService.getParticipant(user.getProfileId());
+        List<Conversation> conversations = conversationsPerParticipant.stream()
+                .map(entry -> (Conversation) entry[0])
+                .collect(toList());
+        Map<Long, Long> unreadMessagesCounts = messageService.countUnreadMessages(participant, conversations);
 
         List<ConversationDtoBean> conversationDtoBeans = conversationsPerParticipant.stream()
             .map(entry -> {
                 Conversation conversation = (Conversation) entry[0];
-                Long count = (Long) entry[1];
-                conversation.setUnreadMessagesCount(count);
+                Instant lastReadOn = (Instant) entry[1];
+                String conversant = (String) entry[2];
+                conversation.setUnreadMessagesCount(unreadMessagesCounts.getOrDefault(conversation.getId(), 0L));
                 String translatedLastMessage = localeHelper.translateMessageIfSystem(conversation);
                 conversation.setLastMessageText(translatedLastMessage);
-                return new ConversationDtoBean(conversation, participant, timeZone);
+                return new ConversationDtoBean(conversation, conversant, lastReadOn, timeZone);
             }).collect(toList());
 
         return new GetConversationsDto(conversationDtoBeans);
     }
 
     @Override
-    public GetConversationDto addParticipants(Long conversationId, Set<Long> subjectIds) {
+    @Transactional
+    public GetConversationDto addParticipants(Long conversationId, Set<Long> subjectIds, boolean minimal) {
         User user = userHolder.getUser();
         Long initiatorId = user.getProfileId();
         Conversation conversation = findOne(conversationId);
@@ -170,8 +222,9 @@ public class ConversationServiceImpl implements ConversationService {
         if (conversation.getType() == Conversation.Type.DIALOGUE && participants.size() == 2) {
             receivers.addAll(subjects);
             message = messageService.createMessage(initiator, receivers, CONFERENCE_CREATED, isSystem, null, null);
-            Conversation updatedConversation = buildConversation(initiator, receivers, null, message);
-            return prepareGetConversationDto(save(updatedConversation), initiator);
+            Conversation updatedConversation = save(buildConversation(initiator, receivers, null, message), singletonList(message));
+            publish(updatedConversation.getParticipants(), MEMBERSHIP_EVENT, StreamEventDto.ofConversation(updatedConversation.getId()));
+            return prepareMutationDto(updatedConversation, singletonList(message), initiator, minimal);
         } else {
             List<Message> messages = new ArrayList<>();
 
@@ -180,15 +233,20 @@ public class ConversationServiceImpl implements ConversationService {
                 conversation.addParticipant(participant);
                 message = messageService.createMessage(initiator, receivers, PARTICIPANT_ADDED_MESSAGE, isSystem, null, participant);
                 messages.add(message);
-                messageService.addMessage(conversation, message, initiator);
+                messageService.addMessage(conversation, message);
             }
 
-            return prepareGetConversationDto(save(conversation), initiator);
+            Conversation savedConversation = save(conversation, messages);
+            readCursorService.createReadCursors(savedConversation, subjects, Instant.EPOCH);
+            subjects.forEach(subject -> membershipService.evict(conversationId, subject.getId()));
+            publish(savedConversation.getParticipants(), MEMBERSHIP_EVENT, StreamEventDto.ofConversation(conversationId));
+            return prepareMutationDto(savedConversation, messages, initiator, minimal);
         }
     }
 
     @Override
-    public GetConversationDto removeParticipant(Long conversationId, Long removedId) {
+    @Transactional
+    public GetConversationDto removeParticipant(Long conversationId, Long removedId, boolean minimal) {
         User user = userHolder.getUser();
         Long removerId = user.getProfileId();
         Participant initiator = participantService.getParticipant(removerId);
@@ -223,8 +281,15 @@ public class ConversationServiceImpl implements ConversationService {
             message = messageService.createMessage(initiator, receivers, PARTICIPANT_REMOVED_MESSAGE, isSystem, null, removed);
         }
 
-        conversation = messageService.addMessage(conversation, message, initiator);
-        return prepareGetConversationDto(save(conversation), initiator);
+        conversation = messageService.addMessage(conversation, message);
+        Conversation savedConversation = save(conversation, singletonList(message));
+        readCursorService.deleteReadCursor(savedConversation, removed);
+        unreadCounterService.touchInboxes(singletonList(removedId));
+        membershipService.evict(conversationId, removedId);
+        publish(participants, MEMBERSHIP_EVENT, StreamEventDto.ofConversation(conversationId));
+        streamService.publish(singletonList(removedId), MEMBERSHIP_EVENT, StreamEventDto.ofConversation(conversationId));
+        streamService.publishUnreadCounts(singletonList(removedId));
+        return prepareMutationDto(savedConversation, singletonList(message), initiator, minimal);
     }
 
     @Override
@@ -233,12 +298,12 @@ public class ConversationServiceImpl implements ConversationService {
     })
     public long countUpdatedConversationsPerParticipant() {
         Long participantId = userHolder.getUser().getProfileId();
-        Participant participant = participantService.getParticipant(participantId);
-        return conversationRepository.countByNewMessagesPerParticipant(participant);
+        return unreadCounterService.getUnreadConversationsCount(participantId);
     }
 
     @Override
-    public GetConversationDto rename(Long conversationId, String name) {
+    @Transactional
+    public GetConversationDto rename(Long conversationId, String name, boolean minimal) {
         Boolean isSystem = Boolean.TRUE;
         Conversation conversation = findOne(conversationId);
         Long initiatorId = userHolder.getUser().getProfileId();
@@ -256,37 +321,58 @@ public class ConversationServiceImpl implements ConversationService {
         }
 
         conversation.setName(name);
-        conversation = messageService.addMessage(conversation, message, initiator);
-        return prepareGetConversationDto(save(conversation), initiator);
+        conversation = messageService.addMessage(conversation, message);
+        Conversation savedConversation = save(conversation, singletonList(message));
+        publish(savedConversation.getParticipants(), RENAME_EVENT, StreamEventDto.ofName(conversationId, name));
+        return prepareMutationDto(savedConversation, singletonList(message), initiator, minimal);
     }
 
     @Override
+    @Transactional
     public void markMessagesAsRead(Long conversationId, List<Long> messageIds) {
         Long participantId = userHolder.getUser().getProfileId();
-        Conversation conversation = findOne(conversationId);
-        Participant participant = participantService.getParticipant(participantId);
-        List<Message> messages = messageService.findMessagesByIds(messageIds);
+        checkMembership(conversationId, participantId);
 
-        if (messages.isEmpty()) {
+        if (messageIds == null || messageIds.isEmpty()) {
             throw new IllegalStateException("Empty messages list.");
         }
 
-        if (!messages.stream().map(Message::getConversation).allMatch(conversation::equals)) {
-            throw new ForbiddenException("Messages belong to different conversations.");
-        }
+        Instant lastMessageCreatedDate = messageService.getLastCreatedDate(conversationId, messageIds);
+        readMarkerService.markAsRead(conversationId, participantId, lastMessageCreatedDate);
+    }
+
+    /**
+     * Tags the caller's view of the conversation: its version, the caller's read position and the caller's locale.
+     * Null is returned for a caller who is not a member.
+     */
+    @Override
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public String getConversationVersion(Long conversationId) {
+        User user = userHolder.getUser();
+        List<Object[]> versions = conversationRepository.findVersion(conversationId, user.getProfileId());
 
-        if (!conversation.getParticipants().contains(participant)) {
-            throw new ForbiddenException("The conversation should contain the given participant.");
+        if (versions.isEmpty()) {
+            return null;
         }
 
-        Instant lastMessageCreatedDate = messages.stream()
-                .map(Message::getCreatedDate)
-                .max(Instant::compareTo)
-                .get();
+        Object[] version = versions.get(0);
+        return version[0] + "-" + ((Instant) version[1]).toEpochMilli() + "-" + buildUserTag(user);
+    }
+
+    @Override
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public String getInboxVersion() {
+        User user = userHolder.getUser();
+        return unreadCounterService.getInboxVersion(user.getProfileId()) + "-" + buildUserTag(user);
+    }
 
-        conversation.getLastReadOn()
-                .put(participant, lastMessageCreatedDate);
-        save(conversation);
+    //the representations are rendered in the caller's language and time zone
+    private String buildUserTag(User user) {
+        return Integer.toHexString(Objects.hash(user.getLocale(), user.getTimezone()));
     }
 
     @HystrixCommand(commandProperties = {
@@ -297,11 +383,22 @@ public class ConversationServiceImpl implements ConversationService {
                 .orElseThrow(() -> new NoSuchElementException("No conversation with id " + id + " found."));
     }
 
-    @HystrixCommand(commandProperties = {
-            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
-    })
-    private Conversation findDialogue(Participant author, Participant receiver) {
-        return conversationRepository.findDialogue(Conversation.Type.DIALOGUE, author, receiver);
+    private void checkMembership(Long conversationId, Long participantId) {
+        if (!membershipService.isMember(conversationId, participantId)) {
+            if (!conversationRepository.existsById(conversationId)) {
+                throw new NoSuchElementException("No conversation with id " + conversationId + " found.");
+            }
+
+            throw new ForbiddenException("Participant " + participantId + " has no access to conversation " + conversationId);
+        }
+    }
+
+    private String buildDialogueKey(Set<Participant> participants) {
+        return participants.stream()
+                .map(Participant::getId)
+                .sorted()
+                .map(String::valueOf)
+                .collect(joining(":"));
     }
 
     @HystrixCommand(commandProperties = {
@@ -311,19 +408,74 @@ public class ConversationServiceImpl implements ConversationService {
         return conversationRepository.save(conversation);
     }
 
+    private Conversation save(Conversation conversation, List<Message> messages) {
+        boolean isNew = conversation.getId() == null;
+        Conversation savedConversation = save(conversation);
+        messageService.saveMessages(messages);
+
+        if (isNew) {
+            readCursorService.createReadCursors(savedConversation, savedConversation.getParticipants(), Instant.EPOCH);
+        }
+
+        readCursorService.registerMessage(savedConversation, messages.get(messages.size() - 1));
+        List<Long> participantIds = savedConversation.getParticipants().stream().map(Participant::getId).collect(toList());
+        conversationRepository.incrementVersions(singletonList(savedConversation.getId()));
+        unreadCounterService.touchInboxes(participantIds);
+        streamService.publish(participantIds, MESSAGE_EVENT, StreamEventDto.ofConversation(savedConversation.getId()));
+        streamService.publishUnreadCounts(participantIds);
+        return savedConversation;
+    }
+
+    private void publish(Set<Participant> participants, String event, StreamEventDto data) {
+        streamService.publish(participants.stream().map(Participant::getId).collect(toList()), event, data);
+    }
+
+    /**
+     * The minimal response holds the messages created by the mutation instead of the latest page.
+     * It costs no query: the initiator has read the conversation up to the last of them.
+     */
+    private GetConversationDto prepareMutationDto(
+            Conversation conversation, List<Message> createdMessages, Participant initiator, boolean minimal) {
+        if (!minimal) {
+            return prepareGetConversationDto(conversation, initiator);
+        }
+
+        //latest first, as in a page
+        List<Message> messages = localeHelper.translateMessagesIfSystem(createdMessages);
+        Collections.reverse(messages);
+        String timeZone = userHolder.getUser().getTimezone();
+        return new GetConversationDto(conversation, messages, conversation.getLastMessageCreatedDate(), timeZone);
+    }
+
     @HystrixCommand(commandProperties = {
             @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
     })
     private GetConversationDto prepareGetConversationDto(Conversation conversation, Participant initiator) {
-        String timeZone = userHolder.getUser().getTimezone();
         List<Message> messages = messageService.getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
-        return new GetConversationDto(conversation, messages, initiator, timeZone);
+        return prepareGetConversationDto(conversation, messages, initiator);
+    }
+
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    private GetConversationDto prepareGetConversationDto(Conversation conversation, List<Message> messages, Participant initiator) {
+        String timeZone = userHolder.getUser().getTimezone();
+        Instant lastReadOn = readCursorService.getLastReadOn(conversation, initiator);
+        return new GetConversationDto(conversation, messages, lastReadOn, timeZone);
+    }
+
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    private List<Object[]> getConversationsPerParticipant(Long participantId, Pageable pageable) {
+        return conversationRepository.findConversationsPerParticipant(participantId, pageable);
     }
 
     @HystrixCommand(commandProperties = {
             @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
     })
-    private List<Object[]> getConversationsPerParticipant(Participant participant, Pageable pageable) {
-        return conversationRepository.findConversationsPerParticipant(participant, pageable);
+    private List<Object[]> getConversationsPerParticipant(Long participantId, Cursor after, Pageable pageable) {
+        return conversationRepository.findConversationsPerParticipantAfter(
+                participantId, after.getCreatedDate(), after.getId(), pageable);
     }
 }
@@ -0,0 +1,76 @@
+package club.tempvs.message.service.impl;
+
+import club.tempvs.message.dao.ConversationRepository;
+import club.tempvs.message.service.MembershipService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixProperty;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+@Service
+@RequiredArgsConstructor
+public class MembershipServiceImpl implements MembershipService {
+
+    private static final long MAX_MEMBERSHIPS = 100_000L;
+    private static final Duration MEMBERSHIP_TTL = Duration.ofMinutes(1);
+
+    private final ConversationRepository conversationRepository;
+    private final Cache<Membership, Boolean> memberships = Caffeine.newBuilder()
+            .maximumSize(MAX_MEMBERSHIPS)
+            .expireAfterWrite(MEMBERSHIP_TTL)
+            .build();
+
+    /**
+     * Tells whether the participant belongs to the conversation. Only positive answers are cached,
+     * the short TTL bounds staleness caused by membership changes made on other instances.
+     */
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public boolean isMember(Long conversationId, Long participantId) {
+        Membership membership = new Membership(conversationId, participantId);
+
+        if (memberships.getIfPresent(membership) != null) {
+            return true;
+        }
+
+        boolean member = conversationRepository.existsByIdAndParticipant(conversationId, participantId);
+
+        if (member) {
+            memberships.put(membership, Boolean.TRUE);
+        }
+
+        return member;
+    }
+
+    /**
+     * Drops the cached answer. Within a transaction it is dropped once more after commit,
+     * so that a concurrent read of the old membership can't outlive the change.
+     */
+    public void evict(Long conversationId, Long participantId) {
+        Membership membership = new Membership(conversationId, participantId);
+        memberships.invalidate(membership);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    memberships.invalidate(membership);
+                }
+            });
+        }
+    }
+
+    @Value
+    private static class Membership {
+        Long conversationId;
+        Long participantId;
+    }
+}
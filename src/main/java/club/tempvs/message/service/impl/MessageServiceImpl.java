@@ -2,11 +2,15 @@ package club.tempvs.message.service.impl;
 
 import static java.util.Objects.nonNull;
 
+import club.tempvs.message.api.ForbiddenException;
+import club.tempvs.message.dao.ConversationRepository;
 import club.tempvs.message.dao.MessageRepository;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
+import club.tempvs.message.model.Cursor;
 import club.tempvs.message.service.MessageService;
+import club.tempvs.message.service.UnreadCounterService;
 import club.tempvs.message.util.LocaleHelper;
 import club.tempvs.message.util.ObjectFactory;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
@@ -16,6 +20,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.*;
@@ -26,9 +31,13 @@ import static java.util.stream.Collectors.*;
 @RequiredArgsConstructor
 public class MessageServiceImpl implements MessageService {
 
+    private static final int DEFAULT_PAGE_NUMBER = 0;
+
     private final ObjectFactory objectFactory;
     private final MessageRepository messageRepository;
     private final LocaleHelper localeHelper;
+    private final ConversationRepository conversationRepository;
+    private final UnreadCounterService unreadCounterService;
 
     public Message createMessage(Participant author,
                                  Set<Participant> receivers, String text, Boolean isSystem, String systemArgs, Participant subject) {
@@ -41,34 +50,62 @@ public class MessageServiceImpl implements MessageService {
         return message;
     }
 
-    public Conversation addMessage(Conversation conversation, Message message, Participant author) {
+    public Conversation addMessage(Conversation conversation, Message message) {
         Instant createdDate = message.getCreatedDate();
+        Participant author = message.getAuthor();
         Participant subject = message.getSubject();
 
         if (nonNull(subject)) {
+            conversation.setLastMessageSubjectId(subject.getId());
             conversation.setLastMessageSubjectName(subject.getName());
         }
 
-        conversation.addMessage(message);
         conversation.setLastMessageText(message.getText());
-        conversation.setLastMessageAuthorName(message.getAuthor().getName());
+        conversation.setLastMessageAuthorId(author.getId());
+        conversation.setLastMessageAuthorName(author.getName());
         conversation.setLastMessageCreatedDate(createdDate);
         conversation.setLastMessageSystem(message.getIsSystem());
         conversation.setLastMessageSystemArgs(message.getSystemArgs());
         message.setConversation(conversation);
-        conversation.getLastReadOn()
-                .put(author, createdDate);
         return conversation;
     }
 
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public List<Message> saveMessages(List<Message> messages) {
+        return messageRepository.saveAll(messages);
+    }
+
     @HystrixCommand(commandProperties = {
             @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
     })
     public List<Message> getMessagesFromConversation(Conversation conversation, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.Direction.DESC, "createdDate");
-        return messageRepository.findByConversation(conversation, pageable).stream()
-                .map(localeHelper::translateMessageIfSystem)
-                .collect(toList());
+        return localeHelper.translateMessagesIfSystem(messageRepository.findByConversation(conversation, pageable));
+    }
+
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public List<Message> getMessagesBefore(Conversation conversation, Cursor cursor, int size) {
+        Pageable pageable = PageRequest.of(DEFAULT_PAGE_NUMBER, size);
+        return localeHelper.translateMessagesIfSystem(
+                messageRepository.findBefore(conversation, cursor.getCreatedDate(), cursor.getId(), pageable));
+    }
+
+    /**
+     * Returns the messages following the cursor, newest first like the other history queries.
+     */
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public List<Message> getMessagesAfter(Conversation conversation, Cursor cursor, int size) {
+        Pageable pageable = PageRequest.of(DEFAULT_PAGE_NUMBER, size);
+        List<Message> messages = localeHelper.translateMessagesIfSystem(
+                messageRepository.findAfter(conversation, cursor.getCreatedDate(), cursor.getId(), pageable));
+        Collections.reverse(messages);
+        return messages;
     }
 
     @HystrixCommand(commandProperties = {
@@ -77,4 +114,68 @@ public class MessageServiceImpl implements MessageService {
     public List<Message> findMessagesByIds(List<Long> ids) {
         return messageRepository.findAllById(ids);
     }
+
+    /**
+     * Resolves the creation date of the latest of the given messages with a single aggregate query,
+     * without loading them. Ids of missing messages are ignored.
+     */
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public Instant getLastCreatedDate(Long conversationId, List<Long> ids) {
+        Object[] aggregate = messageRepository.aggregateByIds(ids).get(0);
+
+        if ((Long) aggregate[0] == 0) {
+            throw new IllegalStateException("Empty messages list.");
+        }
+
+        if (!conversationId.equals(aggregate[1]) || !conversationId.equals(aggregate[2])) {
+            throw new ForbiddenException("Messages belong to different conversations.");
+        }
+
+        return (Instant) aggregate[3];
+    }
+
+    /**
+     * Counts the messages each of the conversations has after the participant's read cursor.
+     * Conversations without unread messages are absent from the result.
+     */
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public Map<Long, Long> countUnreadMessages(Participant participant, List<Conversation> conversations) {
+        if (conversations.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> conversationIds = conversations.stream()
+                .map(Conversation::getId)
+                .collect(toList());
+        return messageRepository.countUnreadMessages(participant.getId(), conversationIds).stream()
+                .collect(toMap(entry -> (Long) entry[0], entry -> (Long) entry[1]));
+    }
+
+    /**
+     * Copies the participant's name into the last message columns of the next batch of conversations
+     * following the given id. Returns the id to continue from or null once all of them are processed.
+     */
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public Long refreshLastMessageNames(Participant participant, Long afterConversationId, int limit) {
+        Long participantId = participant.getId();
+        Pageable pageable = PageRequest.of(DEFAULT_PAGE_NUMBER, limit);
+        List<Long> conversationIds =
+                conversationRepository.findIdsByLastMessageParticipant(participantId, afterConversationId, pageable);
+
+        if (conversationIds.isEmpty()) {
+            return null;
+        }
+
+        conversationRepository.updateLastMessageAuthorName(conversationIds, participantId, participant.getName());
+        conversationRepository.updateLastMessageSubjectName(conversationIds, participantId, participant.getName());
+        unreadCounterService.touchInboxesOfMembers(conversationIds);
+        return conversationIds.size() < limit ? null : conversationIds.get(conversationIds.size() - 1);
+    }
 }
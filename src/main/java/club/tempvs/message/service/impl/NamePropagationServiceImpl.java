@@ -0,0 +1,82 @@
+package club.tempvs.message.service.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.service.MessageService;
+import club.tempvs.message.service.NamePropagationService;
+import club.tempvs.message.service.ReadCursorService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copies changed participants' names into the denormalized last message and conversant columns and bumps
+ * the versions of their conversations and the members' inboxes, so that type and period changes are seen too.
+ * The copying runs in the background once the change is committed, one transaction per batch of conversations.
+ */
+@Service
+@RequiredArgsConstructor
+public class NamePropagationServiceImpl implements NamePropagationService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final Long FIRST_CONVERSATION_ID = 0L;
+
+    private final MessageService messageService;
+    private final ReadCursorService readCursorService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public void propagateNames(Collection<Participant> participants) {
+        if (participants.isEmpty()) {
+            return;
+        }
+
+        //detached copies, the managed instances must not leak to the background thread
+        List<Participant> changedParticipants = participants.stream()
+                .map(participant -> new Participant(
+                        participant.getId(), participant.getName(), participant.getType(), participant.getPeriod()))
+                .collect(toList());
+        Runnable propagation = () -> changedParticipants.forEach(this::propagateName);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    executor.execute(propagation);
+                }
+            });
+        } else {
+            executor.execute(propagation);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void propagateName(Participant participant) {
+        try {
+            Long conversationId = FIRST_CONVERSATION_ID;
+
+            while (conversationId != null) {
+                conversationId = messageService.refreshLastMessageNames(participant, conversationId, BATCH_SIZE);
+            }
+
+            conversationId = FIRST_CONVERSATION_ID;
+
+            while (conversationId != null) {
+                conversationId = readCursorService.refreshConversants(participant, conversationId, BATCH_SIZE);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -3,34 +3,86 @@ package club.tempvs.message.service.impl;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
+import club.tempvs.message.bus.EventBus;
 import club.tempvs.message.domain.Participant;
 import club.tempvs.message.dao.ParticipantRepository;
+import club.tempvs.message.model.ConversationEvent;
+import club.tempvs.message.service.NamePropagationService;
 import club.tempvs.message.service.ParticipantService;
+import club.tempvs.message.service.UnreadCounterService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixProperty;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.time.Duration;
+import java.util.*;
 
+/**
+ * Participants change only through the synchronizer, so they are served from a near-cache. The synchronizer
+ * writes through, lookups only fill in absent entries; both happen on commit so that rolled back state is never
+ * cached. Changes are announced over the event bus and every node drops its copies of the changed participants,
+ * the TTL bounds the staleness caused by a lost announcement.
+ * Hits and misses are published as the "participants" cache metrics.
+ */
 @Service
-@RequiredArgsConstructor
 public class ParticipantServiceImpl implements ParticipantService {
 
+    private static final String CACHE_NAME = "participants";
+    private static final long MAX_PARTICIPANTS = 100_000L;
+    private static final Duration PARTICIPANT_TTL = Duration.ofMinutes(5);
+
     private final ParticipantRepository participantRepository;
+    private final UnreadCounterService unreadCounterService;
+    private final NamePropagationService namePropagationService;
+    private final EventBus eventBus;
+    private final Cache<Long, Participant> participants = Caffeine.newBuilder()
+            .maximumSize(MAX_PARTICIPANTS)
+            .expireAfterWrite(PARTICIPANT_TTL)
+            .recordStats()
+            .build();
+
+    public ParticipantServiceImpl(ParticipantRepository participantRepository,
+                                  UnreadCounterService unreadCounterService,
+                                  NamePropagationService namePropagationService,
+                                  EventBus eventBus,
+                                  MeterRegistry meterRegistry) {
+        this.participantRepository = participantRepository;
+        this.unreadCounterService = unreadCounterService;
+        this.namePropagationService = namePropagationService;
+        this.eventBus = eventBus;
+        CaffeineCacheMetrics.monitor(meterRegistry, participants, CACHE_NAME);
+        eventBus.subscribe(this::evict);
+    }
 
     public Participant getParticipant(Long id) {
         if (isNull(id)) {
             throw new IllegalStateException("Participant's id is not specified");
         }
 
-        Participant participant = findParticipantById(id);
+        Participant participant = participants.getIfPresent(id);
 
         if (nonNull(participant)) {
             return participant;
+        }
+
+        participant = findParticipantById(id);
+
+        if (nonNull(participant)) {
+            cache(singletonList(participant), false);
+            return participant;
         } else {
             throw new IllegalStateException("No participant with id " + id + " found in the db");
         }
@@ -44,12 +96,20 @@ public class ParticipantServiceImpl implements ParticipantService {
             return emptySet();
         }
 
-        List<Participant> participants = participantRepository.findAllById(ids);
+        Map<Long, Participant> foundParticipants = new HashMap<>(participants.getAllPresent(ids));
+        Set<Long> missingIds = new HashSet<>(ids);
+        missingIds.removeAll(foundParticipants.keySet());
+
+        if (!missingIds.isEmpty()) {
+            List<Participant> loadedParticipants = participantRepository.findAllById(missingIds);
+            loadedParticipants.forEach(participant -> foundParticipants.put(participant.getId(), participant));
+            cache(loadedParticipants, false);
+        }
 
-        if (participants.isEmpty()) {
+        if (foundParticipants.isEmpty()) {
             throw new IllegalStateException("No participants with given ids found in database");
         } else {
-            return new HashSet<>(participants);
+            return new HashSet<>(foundParticipants.values());
         }
     }
 
@@ -60,14 +120,141 @@ public class ParticipantServiceImpl implements ParticipantService {
         Participant participant = findParticipantById(id);
 
         if (nonNull(participant)) {
+            boolean changed = isChanged(participant, name, type, period);
             participant.setName(name);
             participant.setType(type);
             participant.setPeriod(period);
+            Participant savedParticipant = participantRepository.save(participant);
+
+            if (changed) {
+                announceChanges(singletonList(savedParticipant));
+                namePropagationService.propagateNames(singletonList(savedParticipant));
+            }
+
+            cache(singletonList(savedParticipant), true);
+            return savedParticipant;
+        }
+
+        participant = participantRepository.save(new Participant(id, name, type, period));
+        unreadCounterService.createUnreadCounter(participant);
+        cache(singletonList(participant), true);
+        return participant;
+    }
+
+    /**
+     * Applies a batch of participant snapshots with one select, jdbc-batched writes and one counter insert.
+     */
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void refreshParticipants(Collection<Participant> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+
+        Set<Long> ids = snapshots.stream()
+                .map(Participant::getId)
+                .collect(toSet());
+        Map<Long, Participant> existingParticipants = participantRepository.findAllById(ids).stream()
+                .collect(toMap(Participant::getId, identity()));
+        List<Participant> newParticipants = new ArrayList<>();
+        List<Participant> changedParticipants = new ArrayList<>();
+
+        for (Participant participant : snapshots) {
+            Participant existingParticipant = existingParticipants.get(participant.getId());
+
+            if (nonNull(existingParticipant)) {
+                if (isChanged(existingParticipant, participant.getName(), participant.getType(), participant.getPeriod())) {
+                    changedParticipants.add(existingParticipant);
+                }
+
+                existingParticipant.setName(participant.getName());
+                existingParticipant.setType(participant.getType());
+                existingParticipant.setPeriod(participant.getPeriod());
+            } else {
+                newParticipants.add(participant);
+            }
+        }
+
+        participantRepository.saveAll(newParticipants);
+        participantRepository.flush();
+        unreadCounterService.createUnreadCounters(newParticipants.stream()
+                .map(Participant::getId)
+                .collect(toList()));
+        announceChanges(changedParticipants);
+        namePropagationService.propagateNames(changedParticipants);
+        cache(existingParticipants.values(), true);
+        cache(newParticipants, true);
+    }
+
+    /**
+     * Whether anything rendered in conversations changes. Such participants are propagated, which bumps
+     * the versions of their conversations, so that conditional reads don't keep serving the old snapshot.
+     */
+    private boolean isChanged(Participant participant, String name, String type, String period) {
+        return !Objects.equals(participant.getName(), name)
+                || !Objects.equals(participant.getType(), type)
+                || !Objects.equals(participant.getPeriod(), period);
+    }
+
+    /**
+     * Tells every node to drop its copies of the participants, after commit if there is a transaction.
+     * Announced before the write-through, so that this node keeps the fresh copies.
+     */
+    private void announceChanges(Collection<Participant> changedParticipants) {
+        if (changedParticipants.isEmpty()) {
+            return;
+        }
+
+        List<Long> participantIds = changedParticipants.stream()
+                .map(Participant::getId)
+                .collect(toList());
+        ConversationEvent event = new ConversationEvent(null, participantIds, PARTICIPANTS_EVENT, null);
+        Runnable announce = () -> eventBus.publish(event);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    announce.run();
+                }
+            });
         } else {
-            participant = new Participant(id, name, type, period);
+            announce.run();
+        }
+    }
+
+    private void evict(ConversationEvent event) {
+        if (PARTICIPANTS_EVENT.equals(event.getType())) {
+            participants.invalidateAll(event.getParticipantIds());
         }
+    }
+
+    /**
+     * Puts the participants to the cache, after commit if there is a transaction. Loaded participants don't
+     * replace cached ones, which may have been written through by the synchronizer in the meantime.
+     */
+    private void cache(Collection<Participant> cachedParticipants, boolean update) {
+        List<Participant> pendingParticipants = new ArrayList<>(cachedParticipants);
+        Runnable put = () -> pendingParticipants.forEach(participant -> {
+            if (update) {
+                participants.put(participant.getId(), participant);
+            } else {
+                participants.asMap().putIfAbsent(participant.getId(), participant);
+            }
+        });
 
-        return participantRepository.save(participant);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put.run();
+                }
+            });
+        } else {
+            put.run();
+        }
     }
 
     @HystrixCommand(commandProperties = {
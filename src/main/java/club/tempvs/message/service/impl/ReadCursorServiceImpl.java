@@ -0,0 +1,186 @@
+package club.tempvs.message.service.impl;
+
+import static java.util.Collections.singletonList;
+import static java.util.Comparator.comparing;
+import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.*;
+
+import club.tempvs.message.dao.ConversationRepository;
+import club.tempvs.message.dao.ReadCursorRepository;
+import club.tempvs.message.domain.Conversation;
+import club.tempvs.message.domain.Message;
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.domain.ReadCursor;
+import club.tempvs.message.service.ReadCursorService;
+import club.tempvs.message.service.UnreadCounterService;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixProperty;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+public class ReadCursorServiceImpl implements ReadCursorService {
+
+    private static final int DEFAULT_PAGE_NUMBER = 0;
+
+    private final ReadCursorRepository readCursorRepository;
+    private final UnreadCounterService unreadCounterService;
+    private final ConversationRepository conversationRepository;
+
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void createReadCursors(Conversation conversation, Set<Participant> participants, Instant lastReadOn) {
+        Long conversationId = conversation.getId();
+        Instant lastMessageCreatedDate = conversation.getLastMessageCreatedDate();
+        boolean unread = nonNull(lastMessageCreatedDate) && lastReadOn.isBefore(lastMessageCreatedDate);
+        Set<Participant> members = conversation.getParticipants();
+        List<ReadCursor> readCursors = participants.stream()
+                .map(participant -> new ReadCursor(conversationId, participant.getId(), lastReadOn, unread,
+                        lastMessageCreatedDate, buildConversant(participant.getId(), members)))
+                .collect(toList());
+        readCursorRepository.saveAll(readCursors);
+
+        if (unread) {
+            unreadCounterService.increment(readCursors.stream()
+                    .map(ReadCursor::getParticipantId)
+                    .collect(toList()));
+        }
+    }
+
+    /**
+     * Marks the conversation as unread for every member except the author and as read for the author.
+     * The cursors are locked so that concurrent messages don't count the same conversation twice.
+     * Conversants are rebuilt as well, since every membership change comes with a message.
+     */
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void registerMessage(Conversation conversation, Message message) {
+        Long authorId = message.getAuthor().getId();
+        List<Long> newlyUnread = new ArrayList<>();
+
+        for (ReadCursor readCursor : readCursorRepository.findForUpdate(conversation.getId())) {
+            Long participantId = readCursor.getParticipantId();
+            readCursor.setLastMessageCreatedDate(conversation.getLastMessageCreatedDate());
+            readCursor.setConversant(buildConversant(participantId, conversation.getParticipants()));
+
+            if (participantId.equals(authorId)) {
+                readCursor.setLastReadOn(message.getCreatedDate());
+
+                if (readCursor.getUnread()) {
+                    readCursor.setUnread(false);
+                    unreadCounterService.decrement(participantId);
+                }
+            } else if (!readCursor.getUnread()) {
+                readCursor.setUnread(true);
+                newlyUnread.add(participantId);
+            }
+        }
+
+        unreadCounterService.increment(newlyUnread);
+    }
+
+    /**
+     * Moves the read position forward, never backwards. The conversation stops counting as unread
+     * once the position reaches its last message.
+     */
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void markAsRead(Long conversationId, Long participantId, Instant lastReadOn) {
+        int updated = readCursorRepository.advanceLastReadOn(conversationId, participantId, lastReadOn);
+
+        if (updated == 0) {
+            return;
+        }
+
+        if (readCursorRepository.clearUnread(conversationId, participantId) > 0) {
+            unreadCounterService.decrement(participantId);
+        }
+
+        unreadCounterService.touchInboxes(singletonList(participantId));
+    }
+
+    /**
+     * Applies buffered read positions, all of them in one transaction.
+     * The single-cursor calls don't go through the proxy, so their Hystrix command doesn't apply here:
+     * this runs on the write-behind thread and is guarded by its retry instead.
+     */
+    @Transactional
+    public void markAsRead(Map<ReadCursor.Key, Instant> lastReadOns) {
+        lastReadOns.forEach((key, lastReadOn) -> markAsRead(key.getConversationId(), key.getParticipantId(), lastReadOn));
+    }
+
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public Instant getLastReadOn(Conversation conversation, Participant participant) {
+        Instant lastReadOn = readCursorRepository.findLastReadOn(conversation.getId(), participant.getId());
+        return nonNull(lastReadOn) ? lastReadOn : Instant.MIN;
+    }
+
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void deleteReadCursor(Conversation conversation, Participant participant) {
+        ReadCursor.Key key = new ReadCursor.Key(conversation.getId(), participant.getId());
+
+        readCursorRepository.findById(key).ifPresent(readCursor -> {
+            if (readCursor.getUnread()) {
+                unreadCounterService.decrement(readCursor.getParticipantId());
+            }
+
+            readCursorRepository.delete(readCursor);
+        });
+    }
+
+    /**
+     * Rebuilds the conversants of the next batch of the participant's conversations following the given id.
+     * Only the conversant column is written, so read positions moved meanwhile are not overwritten.
+     * Returns the id to continue from or null once all of them are processed.
+     */
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public Long refreshConversants(Participant participant, Long afterConversationId, int limit) {
+        List<Long> conversationIds = readCursorRepository.findConversationIds(
+                participant.getId(), afterConversationId, PageRequest.of(DEFAULT_PAGE_NUMBER, limit));
+
+        if (conversationIds.isEmpty()) {
+            return null;
+        }
+
+        Map<Long, List<Participant>> members = readCursorRepository.findMembers(conversationIds).stream()
+                .collect(groupingBy(entry -> (Long) entry[0], mapping(entry -> (Participant) entry[1], toList())));
+
+        members.forEach((conversationId, conversationMembers) -> conversationMembers.forEach(member ->
+                readCursorRepository.updateConversant(conversationId, member.getId(),
+                        buildConversant(member.getId(), conversationMembers))));
+
+        conversationRepository.incrementVersions(conversationIds);
+        unreadCounterService.touchInboxesOfMembers(conversationIds);
+
+        return conversationIds.size() < limit ? null : conversationIds.get(conversationIds.size() - 1);
+    }
+
+    private String buildConversant(Long participantId, Collection<Participant> members) {
+        return members.stream()
+                .filter(member -> !member.getId().equals(participantId))
+                .sorted(comparing(Participant::getId))
+                .map(Participant::getName)
+                .filter(Objects::nonNull)
+                .collect(joining(", "));
+    }
+}
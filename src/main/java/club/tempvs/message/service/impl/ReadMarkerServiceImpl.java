@@ -0,0 +1,105 @@
+package club.tempvs.message.service.impl;
+
+import static java.util.stream.Collectors.toSet;
+
+import club.tempvs.message.domain.ReadCursor;
+import club.tempvs.message.service.ReadCursorService;
+import club.tempvs.message.service.ReadMarkerService;
+import club.tempvs.message.service.StreamService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind buffer for read positions. Repeated marks of the same cursor, e.g. while a user scrolls,
+ * collapse into the latest one, and all pending positions are written in one transaction
+ * at most "read-marker.flush-interval" ms later. Whatever is pending is written on shutdown.
+ */
+@Service
+public class ReadMarkerServiceImpl implements ReadMarkerService {
+
+    private static final long SHUTDOWN_TIMEOUT = 10000L;
+    private static final int MAX_PENDING = 1000;
+
+    private final ReadCursorService readCursorService;
+    private final StreamService streamService;
+    private final ConcurrentMap<ReadCursor.Key, Instant> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final long flushInterval;
+
+    public ReadMarkerServiceImpl(ReadCursorService readCursorService, StreamService streamService,
+                                 @Value("${read-marker.flush-interval:1000}") long flushInterval) {
+        this.readCursorService = readCursorService;
+        this.streamService = streamService;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void markAsRead(Long conversationId, Long participantId, Instant lastReadOn) {
+        pending.merge(new ReadCursor.Key(conversationId, participantId), lastReadOn, ReadMarkerServiceImpl::latest);
+
+        //one early flush at a time, however many marks arrive before it runs
+        if (pending.size() >= MAX_PENDING && !executor.isShutdown() && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    public synchronized void flush() {
+        Map<ReadCursor.Key, Instant> lastReadOns = new HashMap<>();
+
+        for (ReadCursor.Key key : pending.keySet()) {
+            Instant lastReadOn = pending.remove(key);
+
+            if (lastReadOn != null) {
+                lastReadOns.put(key, lastReadOn);
+            }
+        }
+
+        if (lastReadOns.isEmpty()) {
+            return;
+        }
+
+        try {
+            readCursorService.markAsRead(lastReadOns);
+        } catch (RuntimeException e) {
+            //keep the positions for the next round unless newer ones have arrived meanwhile
+            lastReadOns.forEach((key, lastReadOn) -> pending.merge(key, lastReadOn, ReadMarkerServiceImpl::latest));
+            e.printStackTrace();
+            return;
+        }
+
+        streamService.publishUnreadCounts(lastReadOns.keySet().stream()
+                .map(ReadCursor.Key::getParticipantId)
+                .collect(toSet()));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    private static Instant latest(Instant first, Instant second) {
+        return first.isAfter(second) ? first : second;
+    }
+}
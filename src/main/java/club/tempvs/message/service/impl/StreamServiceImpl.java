@@ -0,0 +1,283 @@
+package club.tempvs.message.service.impl;
+
+import static club.tempvs.message.service.ParticipantService.PARTICIPANTS_EVENT;
+import static java.util.stream.Collectors.toList;
+
+import club.tempvs.message.bus.EventBus;
+import club.tempvs.message.dto.StreamEventDto;
+import club.tempvs.message.holder.UserHolder;
+import club.tempvs.message.model.ConversationEvent;
+import club.tempvs.message.service.StreamService;
+import club.tempvs.message.service.UnreadCounterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fan-out hub for the per-participant event streams. Publishing never blocks: events are queued
+ * into a bounded buffer per subscriber and written by a small dispatcher pool. A subscriber whose buffer
+ * overflows, whose connection fails or whose write doesn't complete in time is dropped and is expected
+ * to reconnect and re-fetch. The writes themselves run on a separate pool and the dispatcher waits for
+ * each of them for a limited time only, so a stalled connection doesn't hold up the other subscribers.
+ * Unread counts are looked up on their own pool as well, the database doesn't hold up the writes either.
+ * Events of a transaction are published once it is committed, through the event bus,
+ * so that they reach the participants connected to other nodes as well.
+ * Long-polling callers wait for the next unread event of theirs the same way, without a stream.
+ */
+@Service
+public class StreamServiceImpl implements StreamService {
+
+    private static final long STREAM_TIMEOUT = 30 * 60 * 1000L;
+    private static final long HEARTBEAT_INTERVAL = 30 * 1000L;
+    private static final long SEND_TIMEOUT = 5 * 1000L;
+    private static final int BUFFER_SIZE = 64;
+    private static final int DISPATCHER_THREADS = 4;
+    private static final int LOOKUP_THREADS = 2;
+    private static final String HEARTBEAT_COMMENT = "heartbeat";
+
+    private final UserHolder userHolder;
+    private final UnreadCounterService unreadCounterService;
+    private final EventBus eventBus;
+    private final ConcurrentMap<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<CompletableFuture<Long>>> waiters = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+    private final ExecutorService lookup;
+    private final ExecutorService writer = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public StreamServiceImpl(UserHolder userHolder, UnreadCounterService unreadCounterService, EventBus eventBus) {
+        this(userHolder, unreadCounterService, eventBus,
+                Executors.newFixedThreadPool(DISPATCHER_THREADS), Executors.newFixedThreadPool(LOOKUP_THREADS));
+    }
+
+    public StreamServiceImpl(UserHolder userHolder, UnreadCounterService unreadCounterService, EventBus eventBus,
+                             ExecutorService dispatcher, ExecutorService lookup) {
+        this.userHolder = userHolder;
+        this.unreadCounterService = unreadCounterService;
+        this.eventBus = eventBus;
+        this.dispatcher = dispatcher;
+        this.lookup = lookup;
+        eventBus.subscribe(this::deliver);
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter subscribe() {
+        Long participantId = userHolder.getUser().getProfileId();
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT);
+        Subscriber subscriber = new Subscriber(participantId, emitter);
+        add(subscribers, participantId, subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Completes with the caller's unread conversations count on the next change of their unread state.
+     * The caller cancels the future to stop waiting.
+     */
+    public CompletableFuture<Long> awaitUnreadCount() {
+        Long participantId = userHolder.getUser().getProfileId();
+        CompletableFuture<Long> waiter = new CompletableFuture<>();
+        add(waiters, participantId, waiter);
+        waiter.whenComplete((count, e) -> remove(waiters, participantId, waiter));
+        return waiter;
+    }
+
+    public void publish(Collection<Long> participantIds, String event, StreamEventDto data) {
+        ConversationEvent conversationEvent = new ConversationEvent(
+                data.getConversationId(), new ArrayList<>(participantIds), event, data);
+        afterCommit(() -> eventBus.publish(conversationEvent));
+    }
+
+    public void publishUnreadCounts(Collection<Long> participantIds) {
+        ConversationEvent conversationEvent = new ConversationEvent(
+                null, new ArrayList<>(participantIds), UNREAD_EVENT, null);
+        afterCommit(() -> eventBus.publish(conversationEvent));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdown();
+        dispatcher.shutdown();
+        lookup.shutdown();
+        subscribers.values().forEach(participantSubscribers -> participantSubscribers.forEach(Subscriber::complete));
+        subscribers.clear();
+        waiters.values().forEach(participantWaiters -> participantWaiters.forEach(waiter -> waiter.cancel(false)));
+        writer.shutdown();
+    }
+
+    private void deliver(ConversationEvent event) {
+        List<Long> participantIds = event.getParticipantIds();
+
+        if (PARTICIPANTS_EVENT.equals(event.getType())) {
+            //not meant for the streams, the participant cache handles it
+            return;
+        }
+
+        if (UNREAD_EVENT.equals(event.getType())) {
+            lookup.execute(() -> sendUnreadCounts(participantIds));
+        } else {
+            participantIds.forEach(participantId -> send(participantId, event.getType(), event.getData()));
+        }
+    }
+
+    private void sendUnreadCounts(List<Long> participantIds) {
+        List<Long> subscribedIds = participantIds.stream()
+                .filter(participantId -> subscribers.containsKey(participantId) || waiters.containsKey(participantId))
+                .distinct()
+                .collect(toList());
+
+        if (subscribedIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            unreadCounterService.getUnreadConversationsCounts(subscribedIds).forEach((participantId, count) -> {
+                send(participantId, UNREAD_EVENT, StreamEventDto.ofCount(count));
+                Set<CompletableFuture<Long>> participantWaiters = waiters.get(participantId);
+
+                if (participantWaiters != null) {
+                    participantWaiters.forEach(waiter -> waiter.complete(count));
+                }
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void send(Long participantId, String event, StreamEventDto data) {
+        Set<Subscriber> participantSubscribers = subscribers.get(participantId);
+
+        if (participantSubscribers != null) {
+            participantSubscribers.forEach(subscriber -> subscriber.offer(SseEmitter.event().name(event).data(data)));
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.values().forEach(participantSubscribers -> participantSubscribers.forEach(subscriber ->
+                subscriber.offer(SseEmitter.event().comment(HEARTBEAT_COMMENT))));
+    }
+
+    private void remove(Subscriber subscriber) {
+        remove(subscribers, subscriber.participantId, subscriber);
+    }
+
+    /**
+     * Adds and removes within the map's lock, so that nothing is added to a set that has just been dropped.
+     */
+    private static <T> void add(ConcurrentMap<Long, Set<T>> map, Long participantId, T item) {
+        map.compute(participantId, (id, items) -> {
+            Set<T> result = items != null ? items : ConcurrentHashMap.newKeySet();
+            result.add(item);
+            return result;
+        });
+    }
+
+    private static <T> void remove(ConcurrentMap<Long, Set<T>> map, Long participantId, T item) {
+        map.computeIfPresent(participantId, (id, items) -> {
+            items.remove(item);
+            return items.isEmpty() ? null : items;
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private class Subscriber {
+
+        private final Long participantId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscriber(Long participantId, SseEmitter emitter) {
+            this.participantId = participantId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (!buffer.offer(event)) {
+                //a slow consumer, it has to reconnect and catch up by fetching
+                complete();
+                return;
+            }
+
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    complete();
+                }
+            }
+        }
+
+        //a stalled write holds the emitter's lock, so the emitter is completed on the writer pool
+        void complete() {
+            remove(this);
+            buffer.clear();
+            writer.execute(emitter::complete);
+        }
+
+        private void drain() {
+            SseEmitter.SseEventBuilder event;
+
+            try {
+                while ((event = buffer.poll()) != null) {
+                    write(event);
+                }
+            } catch (IOException | IllegalStateException | TimeoutException e) {
+                remove(this);
+                buffer.clear();
+                writer.execute(() -> emitter.completeWithError(e));
+            } finally {
+                scheduled.set(false);
+            }
+
+            if (!buffer.isEmpty() && scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void write(SseEmitter.SseEventBuilder event) throws IOException, TimeoutException {
+            Future<?> result = writer.submit(() -> {
+                emitter.send(event);
+                return null;
+            });
+
+            try {
+                result.get(SEND_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package club.tempvs.message.service.impl;
+
+import static java.util.Collections.singletonList;
+
+import club.tempvs.message.dao.ReadCursorRepository;
+import club.tempvs.message.dao.UnreadCounterRepository;
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.domain.UnreadCounter;
+import club.tempvs.message.service.UnreadCounterService;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixProperty;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class UnreadCounterServiceImpl implements UnreadCounterService {
+
+    private final UnreadCounterRepository unreadCounterRepository;
+    private final ReadCursorRepository readCursorRepository;
+
+    /**
+     * Leaves an existing counter as it is, e.g. on a redelivered participant message.
+     */
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void createUnreadCounter(Participant participant) {
+        unreadCounterRepository.insertMissing(singletonList(participant.getId()));
+    }
+
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void createUnreadCounters(Collection<Long> participantIds) {
+        if (!participantIds.isEmpty()) {
+            unreadCounterRepository.insertMissing(participantIds);
+        }
+    }
+
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public long getUnreadConversationsCount(Long participantId) {
+        return unreadCounterRepository.findById(participantId)
+                .map(UnreadCounter::getUnreadConversations)
+                .orElse(0L);
+    }
+
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public Map<Long, Long> getUnreadConversationsCounts(Collection<Long> participantIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        participantIds.forEach(participantId -> counts.put(participantId, 0L));
+        unreadCounterRepository.findAllById(participantIds)
+                .forEach(counter -> counts.put(counter.getParticipantId(), counter.getUnreadConversations()));
+        return counts;
+    }
+
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void increment(Collection<Long> participantIds) {
+        if (!participantIds.isEmpty()) {
+            unreadCounterRepository.increment(participantIds);
+        }
+    }
+
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void decrement(Long participantId) {
+        unreadCounterRepository.decrement(participantId);
+    }
+
+    /**
+     * Bumps the inbox versions, the inboxes of the given participants are no longer what their clients hold.
+     */
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void touchInboxes(Collection<Long> participantIds) {
+        if (!participantIds.isEmpty()) {
+            unreadCounterRepository.incrementInboxVersions(participantIds);
+        }
+    }
+
+    @Transactional
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public void touchInboxesOfMembers(Collection<Long> conversationIds) {
+        if (!conversationIds.isEmpty()) {
+            unreadCounterRepository.incrementInboxVersionsOfMembers(conversationIds);
+        }
+    }
+
+    @HystrixCommand(commandProperties = {
+            @HystrixProperty(name = "execution.isolation.strategy", value = "SEMAPHORE")
+    })
+    public long getInboxVersion(Long participantId) {
+        Long inboxVersion = unreadCounterRepository.findInboxVersion(participantId);
+        return inboxVersion != null ? inboxVersion : 0L;
+    }
+
+    /**
+     * Recomputes the unread flags of all read cursors from their timestamps and the counters from the flags.
+     * Repairs any drift left by concurrent read-marking and posting.
+     */
+    @Transactional
+    public void rebuildUnreadCounters() {
+        readCursorRepository.refresh();
+        unreadCounterRepository.insertMissing();
+        unreadCounterRepository.recount();
+    }
+}
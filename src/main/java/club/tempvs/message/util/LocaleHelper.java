@@ -3,9 +3,13 @@ package club.tempvs.message.util;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 
+import java.util.List;
+
 public interface LocaleHelper {
 
     Message translateMessageIfSystem(Message message);
 
+    List<Message> translateMessagesIfSystem(List<Message> messages);
+
     String translateMessageIfSystem(Conversation conversation);
 }
@@ -0,0 +1,8 @@
+package club.tempvs.message.util;
+
+import club.tempvs.message.model.User;
+
+public interface UserInfoParser {
+
+    User parse(String userInfo);
+}
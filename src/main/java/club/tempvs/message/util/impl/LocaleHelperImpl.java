@@ -3,53 +3,132 @@ package club.tempvs.message.util.impl;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.util.LocaleHelper;
-import club.tempvs.message.util.ObjectFactory;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Component;
 
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Translates system messages, which store a message code and comma-separated arguments instead of a text.
+ * Message templates are parsed once per code and locale; locales come from the User-Info header,
+ * so the number of cached locales is capped.
+ */
 @Component
 @RequiredArgsConstructor
 public class LocaleHelperImpl implements LocaleHelper {
 
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final char ARGS_SEPARATOR = ',';
+    private static final int MAX_LOCALES = 100;
+
     private final MessageSource messageSource;
-    private final ObjectFactory objectFactory;
+    private final Map<Locale, Map<String, Template>> templates = new ConcurrentHashMap<>();
 
     public Message translateMessageIfSystem(Message originalMessage) {
-        if (originalMessage.getIsSystem()) {
-            String code = originalMessage.getText();
-            String[] args = new String[0];
-            String argsString = originalMessage.getSystemArgs();
+        return translateMessageIfSystem(originalMessage, LocaleContextHolder.getLocale());
+    }
 
-            if (argsString != null) {
-                args = argsString.split(",");
-            }
+    /**
+     * Translates a page of messages for the current locale. System messages are replaced by translated copies,
+     * so the managed entities are left untouched.
+     */
+    public List<Message> translateMessagesIfSystem(List<Message> originalMessages) {
+        Locale locale = LocaleContextHolder.getLocale();
+        List<Message> messages = new ArrayList<>(originalMessages.size());
 
-            Message translatedMessage = objectFactory.getInstance(Message.class, originalMessage);
-            String translatedMessageString = messageSource.getMessage(code, args, code, LocaleContextHolder.getLocale());
-            translatedMessage.setText(translatedMessageString);
-            return translatedMessage;
-        } else {
-            return originalMessage;
+        for (Message originalMessage : originalMessages) {
+            messages.add(translateMessageIfSystem(originalMessage, locale));
         }
+
+        return messages;
     }
 
     public String translateMessageIfSystem(Conversation conversation) {
         String originalMessage = conversation.getLastMessageText();
 
         if (conversation.getLastMessageSystem()) {
-            String code = originalMessage;
-            String[] args = new String[0];
-            String argsString = conversation.getLastMessageSystemArgs();
-
-            if (argsString != null) {
-                args = argsString.split(",");
-            }
+            return translate(originalMessage, conversation.getLastMessageSystemArgs(), LocaleContextHolder.getLocale());
+        } else {
+            return originalMessage;
+        }
+    }
 
-            return messageSource.getMessage(code, args, code, LocaleContextHolder.getLocale());
+    private Message translateMessageIfSystem(Message originalMessage, Locale locale) {
+        if (originalMessage.getIsSystem()) {
+            Message translatedMessage = new Message(originalMessage);
+            translatedMessage.setText(translate(originalMessage.getText(), originalMessage.getSystemArgs(), locale));
+            return translatedMessage;
         } else {
             return originalMessage;
         }
     }
+
+    private String translate(String code, String argsString, Locale locale) {
+        Template template = getTemplate(code, locale);
+        Object[] args = parseArgs(argsString);
+
+        if (args.length == 0) {
+            return template.getPattern();
+        }
+
+        MessageFormat format = template.getFormat();
+
+        //MessageFormat is not thread-safe
+        synchronized (format) {
+            return format.format(args);
+        }
+    }
+
+    private Template getTemplate(String code, Locale locale) {
+        Map<String, Template> templatesPerLocale = templates.get(locale);
+
+        if (templatesPerLocale == null) {
+            if (templates.size() >= MAX_LOCALES) {
+                return new Template(messageSource.getMessage(code, null, code, locale), locale);
+            }
+
+            templatesPerLocale = templates.computeIfAbsent(locale, key -> new ConcurrentHashMap<>());
+        }
+
+        return templatesPerLocale.computeIfAbsent(code,
+                key -> new Template(messageSource.getMessage(key, null, key, locale), locale));
+    }
+
+    private Object[] parseArgs(String argsString) {
+        if (argsString == null) {
+            return NO_ARGS;
+        }
+
+        List<String> args = new ArrayList<>();
+        int start = 0;
+        int end;
+
+        while ((end = argsString.indexOf(ARGS_SEPARATOR, start)) >= 0) {
+            args.add(argsString.substring(start, end));
+            start = end + 1;
+        }
+
+        args.add(argsString.substring(start));
+        return args.toArray();
+    }
+
+    @Getter
+    private static class Template {
+
+        private final String pattern;
+        private final MessageFormat format;
+
+        Template(String pattern, Locale locale) {
+            this.pattern = pattern;
+            this.format = new MessageFormat(pattern, locale);
+        }
+    }
 }
@@ -1,46 +1,78 @@
 package club.tempvs.message.util.impl;
 
 import club.tempvs.message.util.ObjectFactory;
+import lombok.Value;
 import org.springframework.stereotype.Component;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
-import java.util.function.BiFunction;
-import java.util.function.Predicate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Resolves a constructor once per class and argument types and keeps its method handle,
+ * so repeated instantiation costs neither a constructor lookup nor a reflective call.
+ */
 @Component
 public class ObjectFactoryImpl implements ObjectFactory {
 
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final ConcurrentMap<Signature, MethodHandle> constructors = new ConcurrentHashMap<>();
+
     @Override
     public <T> T getInstance(Class<T> clazz, Object... args) {
-        Class[] parameterTypes = Arrays.stream(args).map(Object::getClass).toArray(Class[]::new);
-        BiFunction<Class, Class, Boolean> typeMatcher = (constrType, invokedType) -> constrType.isAssignableFrom(invokedType);
-
-        Predicate<Class[]> traverser = (Class[] classes) -> {
-            for (int i = 0; i < parameterTypes.length; i++) {
-                if (!typeMatcher.apply(classes[i], parameterTypes[i])) {
-                    return false;
-                }
-            }
+        Class[] parameterTypes = new Class[args.length];
 
-            return true;
-        };
+        for (int i = 0; i < args.length; i++) {
+            parameterTypes[i] = args[i].getClass();
+        }
 
-        Constructor<T>[] constructors = (Constructor<T>[]) clazz.getConstructors();
-        Constructor<T> constructor = Arrays.stream(constructors)
-                .filter(constr -> constr.getParameterCount() == parameterTypes.length)
-                .filter(constr -> traverser.test(constr.getParameterTypes()))
-                .findAny().orElseThrow(() -> new RuntimeException("ObjectFactory: Constructor not found."));
+        MethodHandle constructor = constructors.computeIfAbsent(
+                new Signature(clazz, Arrays.asList(parameterTypes)), this::resolveConstructor);
 
-        T instance;
+        try {
+            return clazz.cast(constructor.invokeExact(args));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private MethodHandle resolveConstructor(Signature signature) {
+        List<Class> parameterTypes = signature.getParameterTypes();
+        Constructor<?> constructor = Arrays.stream(signature.getType().getConstructors())
+                .filter(constr -> constr.getParameterCount() == parameterTypes.size())
+                .filter(constr -> isApplicable(constr.getParameterTypes(), parameterTypes))
+                .findAny().orElseThrow(() -> new RuntimeException("ObjectFactory: Constructor not found."));
 
         try {
-            instance = constructor.newInstance(args);
-        } catch (Exception e) {
-            e.printStackTrace();
+            return MethodHandles.publicLookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, parameterTypes.size())
+                    .asType(SPREAD_TYPE);
+        } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    private boolean isApplicable(Class[] constructorTypes, List<Class> invokedTypes) {
+        for (int i = 0; i < constructorTypes.length; i++) {
+            if (!constructorTypes[i].isAssignableFrom(invokedTypes.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 
-        return instance;
+    @Value
+    private static class Signature {
+        Class<?> type;
+        List<Class> parameterTypes;
     }
 }
@@ -0,0 +1,58 @@
+package club.tempvs.message.util.impl;
+
+import club.tempvs.message.dto.UserInfoDto;
+import club.tempvs.message.model.User;
+import club.tempvs.message.util.UserInfoParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Parses User-Info headers into users. The gateway repeats the same header value for every request
+ * of a session, so parsed users are cached by the raw header value; hits and misses are published
+ * as the "userInfo" cache metrics.
+ */
+@Component
+public class UserInfoParserImpl implements UserInfoParser {
+
+    private static final String CACHE_NAME = "userInfo";
+    private static final long MAX_USERS = 10_000L;
+    private static final Duration USER_TTL = Duration.ofMinutes(10);
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, User> users = Caffeine.newBuilder()
+            .maximumSize(MAX_USERS)
+            .expireAfterWrite(USER_TTL)
+            .recordStats()
+            .build();
+
+    public UserInfoParserImpl(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        CaffeineCacheMetrics.monitor(meterRegistry, users, CACHE_NAME);
+    }
+
+    /**
+     * @return the parsed user or null if the header is missing or malformed.
+     */
+    @Override
+    public User parse(String userInfo) {
+        if (userInfo == null) {
+            return null;
+        }
+
+        return users.get(userInfo, this::read);
+    }
+
+    private User read(String userInfo) {
+        try {
+            return new User(objectMapper.readValue(userInfo, UserInfoDto.class));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package club.tempvs.message.amqp;
+
+import club.tempvs.message.amqp.impl.AMQPEventBus;
+import club.tempvs.message.model.ConversationEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Envelope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AMQPEventBusTest {
+
+    private static final String MESSAGE_EVENTS_AMQP_EXCHANGE = "message.events";
+    private static final String QUEUE = "amq.gen-queue";
+
+    private AMQPEventBus eventBus;
+    private ConversationEvent event = new ConversationEvent(1L, Arrays.asList(2L), "message", null);
+    private byte[] body = new byte[]{1};
+
+    @Mock
+    private ConnectionFactory amqpConnectionFactory;
+    @Mock
+    private ObjectMapper jacksonObjectMapper;
+    @Mock
+    private Connection connection;
+    @Mock
+    private Channel channel;
+    @Mock
+    private AMQP.Queue.DeclareOk declareOk;
+    @Mock
+    private Envelope envelope;
+    @Mock
+    private Consumer<ConversationEvent> listener;
+
+    @Before
+    public void setup() throws Exception {
+        eventBus = new AMQPEventBus(jacksonObjectMapper, amqpConnectionFactory);
+        eventBus.subscribe(listener);
+
+        when(amqpConnectionFactory.newConnection()).thenReturn(connection);
+        when(connection.createChannel()).thenReturn(channel);
+        when(channel.queueDeclare()).thenReturn(declareOk);
+        when(declareOk.getQueue()).thenReturn(QUEUE);
+    }
+
+    @After
+    public void cleanup() {
+        eventBus.close();
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        when(jacksonObjectMapper.writeValueAsBytes(event)).thenReturn(body);
+
+        eventBus.start();
+        eventBus.publish(event);
+
+        verify(channel, timeout(1000)).basicPublish(
+                eq(MESSAGE_EVENTS_AMQP_EXCHANGE), eq(""), any(AMQP.BasicProperties.class), eq(body));
+        verify(channel).exchangeDeclare(MESSAGE_EVENTS_AMQP_EXCHANGE, "fanout");
+        verify(channel).queueBind(QUEUE, MESSAGE_EVENTS_AMQP_EXCHANGE, "");
+        verify(channel).basicConsume(eq(QUEUE), eq(true), any(com.rabbitmq.client.Consumer.class));
+        verify(listener).accept(event);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testDeliveryFromOtherNode() throws Exception {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().appId("other node").build();
+        ArgumentCaptor<com.rabbitmq.client.Consumer> consumerCaptor = ArgumentCaptor.forClass(com.rabbitmq.client.Consumer.class);
+
+        when(jacksonObjectMapper.readValue(body, ConversationEvent.class)).thenReturn(event);
+
+        eventBus.start();
+        verify(channel, timeout(1000)).basicConsume(eq(QUEUE), eq(true), consumerCaptor.capture());
+        consumerCaptor.getValue().handleDelivery("tag", envelope, properties, body);
+
+        verify(listener).accept(event);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testDeliveryFromOwnNode() throws Exception {
+        ArgumentCaptor<AMQP.BasicProperties> propertiesCaptor = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        ArgumentCaptor<com.rabbitmq.client.Consumer> consumerCaptor = ArgumentCaptor.forClass(com.rabbitmq.client.Consumer.class);
+
+        when(jacksonObjectMapper.writeValueAsBytes(event)).thenReturn(body);
+
+        eventBus.start();
+        eventBus.publish(event);
+        verify(channel, timeout(1000)).basicPublish(
+                eq(MESSAGE_EVENTS_AMQP_EXCHANGE), eq(""), propertiesCaptor.capture(), eq(body));
+        verify(channel).basicConsume(eq(QUEUE), eq(true), consumerCaptor.capture());
+        consumerCaptor.getValue().handleDelivery("tag", envelope, propertiesCaptor.getValue(), body);
+
+        verify(listener).accept(event);
+        verifyNoMoreInteractions(listener, jacksonObjectMapper);
+    }
+}
@@ -1,26 +1,33 @@
 package club.tempvs.message.amqp;
 
 import club.tempvs.message.amqp.impl.ParticipantSynchronizerImpl;
+import club.tempvs.message.domain.Participant;
 import club.tempvs.message.dto.ParticipantDto;
 import club.tempvs.message.service.ParticipantService;
-import club.tempvs.message.util.ObjectFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.QueueingConsumer;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import static org.junit.Assert.*;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import static org.mockito.Mockito.*;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.IOException;
+import java.util.Collection;
+
 @RunWith(MockitoJUnitRunner.class)
 public class ParticipantSynchronizerTest {
 
     private static final String MESSAGE_PARTICIPANT_AMQP_QUEUE = "message.participant";
-    private static final int DELIVERY_TIMEOUT = 30000; //30 seconds
+    private static final int PREFETCH_COUNT = 200;
 
     private ParticipantSynchronizer participantSynchronizer;
 
@@ -31,64 +38,155 @@ public class ParticipantSynchronizerTest {
     @Mock
     private ParticipantService participantService;
     @Mock
-    private ObjectFactory objectFactory;
-    @Mock
     private Connection connection;
     @Mock
     private Channel channel;
-    @Mock
-    private QueueingConsumer consumer;
-    @Mock
-    private QueueingConsumer.Delivery delivery;
-    @Mock
-    private ParticipantDto participantDto;
 
     @Before
     public void setup() {
         participantSynchronizer = new ParticipantSynchronizerImpl(
-                jacksonObjectMapper, participantService, amqpConnectionFactory, objectFactory);
+                jacksonObjectMapper, participantService, amqpConnectionFactory);
+    }
+
+    @After
+    public void cleanup() {
+        ((ParticipantSynchronizerImpl) participantSynchronizer).close();
     }
 
     @Test
     public void testParticipantSynchronizer() throws Exception {
-        String jsonBodyAsString = "{}";
-        byte[] jsonBodyAsByteArray = jsonBodyAsString.getBytes();
-        Long participantId = 1L;
-        String name = "name";
-        String type = "type";
-        String period = "period";
-
         when(amqpConnectionFactory.newConnection()).thenReturn(connection);
         when(connection.createChannel()).thenReturn(channel);
-        when(objectFactory.getInstance(QueueingConsumer.class, channel)).thenReturn(consumer);
-        when(consumer.nextDelivery(DELIVERY_TIMEOUT)).thenReturn(delivery);
-        when(delivery.getBody()).thenReturn(jsonBodyAsByteArray);
-        when(jacksonObjectMapper.readValue(jsonBodyAsString, ParticipantDto.class)).thenReturn(participantDto);
-        when(participantDto.getId()).thenReturn(participantId);
-        when(participantDto.getName()).thenReturn(name);
-        when(participantDto.getType()).thenReturn(type);
-        when(participantDto.getPeriod()).thenReturn(period);
-        //throws an exception only to break the infinite loop
-        when(participantService.refreshParticipant(participantId, name, type, period)).thenThrow(new RuntimeException());
 
         participantSynchronizer.execute();
 
         verify(amqpConnectionFactory).newConnection();
         verify(connection).createChannel();
         verify(channel).queueDeclare(MESSAGE_PARTICIPANT_AMQP_QUEUE, false, false, false, null);
-        verify(objectFactory).getInstance(QueueingConsumer.class, channel);
-        verify(channel).basicConsume(MESSAGE_PARTICIPANT_AMQP_QUEUE, true, consumer);
-        verify(consumer).nextDelivery(DELIVERY_TIMEOUT);
-        verify(delivery).getBody();
-        verify(jacksonObjectMapper).readValue(jsonBodyAsString, ParticipantDto.class);
-        verify(participantDto).getId();
-        verify(participantDto).getName();
-        verify(participantDto).getType();
-        verify(participantDto).getPeriod();
+        verify(channel).basicQos(PREFETCH_COUNT);
+        verify(channel).basicConsume(eq(MESSAGE_PARTICIPANT_AMQP_QUEUE), eq(false), any(Consumer.class));
+        verifyNoMoreInteractions(amqpConnectionFactory, connection, channel, jacksonObjectMapper, participantService);
+    }
+
+    @Test
+    public void testParticipantSynchronizerWhenSubscribed() throws Exception {
+        when(amqpConnectionFactory.newConnection()).thenReturn(connection);
+        when(connection.createChannel()).thenReturn(channel);
+
+        participantSynchronizer.execute();
+        participantSynchronizer.execute();
+
+        verify(amqpConnectionFactory).newConnection();
+        verifyNoMoreInteractions(amqpConnectionFactory);
+    }
+
+    @Test
+    public void testParticipantSynchronizerForFailedConnection() throws Exception {
+        when(amqpConnectionFactory.newConnection()).thenThrow(new IOException()).thenReturn(connection);
+        when(connection.createChannel()).thenReturn(channel);
+
+        participantSynchronizer.execute();
+        participantSynchronizer.execute();
+
+        verify(amqpConnectionFactory, times(2)).newConnection();
+        verify(connection).createChannel();
+        verifyNoMoreInteractions(amqpConnectionFactory, connection);
+    }
+
+    @Test
+    public void testHandleDelivery() throws Exception {
+        ParticipantDto participantDto = new ParticipantDto();
+        participantDto.setId(1L);
+        participantDto.setName("name");
+        participantDto.setType("type");
+        participantDto.setPeriod("period");
+        ParticipantDto renamedParticipantDto = new ParticipantDto();
+        renamedParticipantDto.setId(1L);
+        renamedParticipantDto.setName("new name");
+        renamedParticipantDto.setType("type");
+        renamedParticipantDto.setPeriod("period");
+        ArgumentCaptor<Collection<Participant>> participantsCaptor = ArgumentCaptor.forClass(Collection.class);
+
+        Consumer consumer = subscribe();
+        when(jacksonObjectMapper.readValue("{1}", ParticipantDto.class)).thenReturn(participantDto);
+        when(jacksonObjectMapper.readValue("{2}", ParticipantDto.class)).thenReturn(renamedParticipantDto);
+
+        consumer.handleDelivery("tag", buildEnvelope(1L, false), null, "{1}".getBytes());
+        consumer.handleDelivery("tag", buildEnvelope(2L, false), null, "{2}".getBytes());
+
+        verify(channel, timeout(1000)).basicAck(2L, true);
+        verify(participantService).refreshParticipants(participantsCaptor.capture());
+        verifyNoMoreInteractions(participantService);
+
+        Participant participant = participantsCaptor.getValue().iterator().next();
+        assertEquals("Duplicate updates are collapsed", 1, participantsCaptor.getValue().size());
+        assertEquals("The latest update is applied", "new name", participant.getName());
+    }
+
+    @Test
+    public void testHandleDeliveryForFailedBatch() throws Exception {
+        ParticipantDto participantDto = new ParticipantDto();
+        participantDto.setId(1L);
+        ParticipantDto failingParticipantDto = new ParticipantDto();
+        failingParticipantDto.setId(2L);
+
+        Consumer consumer = subscribe();
+        when(jacksonObjectMapper.readValue("{1}", ParticipantDto.class)).thenReturn(participantDto);
+        when(jacksonObjectMapper.readValue("{2}", ParticipantDto.class)).thenReturn(failingParticipantDto);
+        doThrow(new RuntimeException()).doNothing().doThrow(new RuntimeException())
+                .when(participantService).refreshParticipants(any());
+
+        consumer.handleDelivery("tag", buildEnvelope(1L, false), null, "{1}".getBytes());
+        consumer.handleDelivery("tag", buildEnvelope(2L, false), null, "{2}".getBytes());
+
+        verify(channel, timeout(1000)).basicNack(2L, false, true);
+        verify(channel).basicAck(1L, false);
+        verify(channel, never()).basicAck(2L, true);
+        verify(participantService, times(3)).refreshParticipants(any());
+    }
+
+    @Test
+    public void testHandleRedeliveryForFailedRefresh() throws Exception {
+        ParticipantDto participantDto = new ParticipantDto();
+        participantDto.setId(1L);
+
+        Consumer consumer = subscribe();
+        when(jacksonObjectMapper.readValue("{1}", ParticipantDto.class)).thenReturn(participantDto);
+        doThrow(new RuntimeException()).when(participantService).refreshParticipants(any());
+
+        consumer.handleDelivery("tag", buildEnvelope(1L, true), null, "{1}".getBytes());
+
+        verify(channel, timeout(1000)).basicNack(1L, false, false);
+        verify(channel, never()).basicAck(1L, true);
+        verify(channel, never()).basicAck(1L, false);
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        when(amqpConnectionFactory.newConnection()).thenReturn(connection);
+        when(connection.createChannel()).thenReturn(channel);
+        when(connection.isOpen()).thenReturn(true);
+        when(channel.isOpen()).thenReturn(true);
+
+        participantSynchronizer.execute();
+        ((ParticipantSynchronizerImpl) participantSynchronizer).close();
+
         verify(channel).close();
         verify(connection).close();
-        verify(participantService).refreshParticipant(participantId, name, type, period);
-        verifyNoMoreInteractions(amqpConnectionFactory, connection, channel, objectFactory, consumer, delivery,
-                jacksonObjectMapper, participantDto, participantService);
+    }
+
+    private Consumer subscribe() throws Exception {
+        ArgumentCaptor<Consumer> consumerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        when(amqpConnectionFactory.newConnection()).thenReturn(connection);
+        when(connection.createChannel()).thenReturn(channel);
+
+        participantSynchronizer.execute();
+
+        verify(channel).basicConsume(eq(MESSAGE_PARTICIPANT_AMQP_QUEUE), eq(false), consumerCaptor.capture());
+        return consumerCaptor.getValue();
+    }
+
+    private Envelope buildEnvelope(long deliveryTag, boolean redeliver) {
+        return new Envelope(deliveryTag, redeliver, "", MESSAGE_PARTICIPANT_AMQP_QUEUE);
     }
 }
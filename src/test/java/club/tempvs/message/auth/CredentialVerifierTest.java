@@ -0,0 +1,44 @@
+package club.tempvs.message.auth;
+
+import club.tempvs.message.auth.impl.TokenDigestCredentialVerifier;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CredentialVerifierTest {
+
+    private static final String TOKEN_DIGEST = "df41895b9f26094d0b1d39b7bdd9849e"; //security_token as MD5
+    private static final String NEW_TOKEN_DIGEST = "5298fe9d0132620345446e1d309e88cb"; //new_token as MD5
+
+    private CredentialVerifier credentialVerifier;
+
+    @Before
+    public void setup() {
+        this.credentialVerifier = new TokenDigestCredentialVerifier(new String[]{"security_token", " "});
+    }
+
+    @Test
+    public void testVerify() {
+        assertTrue("The digest of the configured token is accepted", credentialVerifier.verify(TOKEN_DIGEST));
+    }
+
+    @Test
+    public void testVerifyForWrongCredential() {
+        assertFalse("A wrong digest is rejected", credentialVerifier.verify(NEW_TOKEN_DIGEST));
+        assertFalse("The raw token is rejected", credentialVerifier.verify("security_token"));
+        assertFalse("An empty credential is rejected", credentialVerifier.verify(""));
+    }
+
+    @Test
+    public void testVerifyForMissingCredential() {
+        assertFalse("A missing credential is rejected", credentialVerifier.verify(null));
+    }
+
+    @Test
+    public void testVerifyForRotatedTokens() {
+        CredentialVerifier rotatingVerifier = new TokenDigestCredentialVerifier(new String[]{"security_token", "new_token"});
+
+        assertTrue("The old token is still accepted", rotatingVerifier.verify(TOKEN_DIGEST));
+        assertTrue("The new token is accepted", rotatingVerifier.verify(NEW_TOKEN_DIGEST));
+    }
+}
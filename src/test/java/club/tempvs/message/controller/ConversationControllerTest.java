@@ -1,7 +1,9 @@
 package club.tempvs.message.controller;
 
 import club.tempvs.message.dto.*;
+import club.tempvs.message.model.Cursor;
 import club.tempvs.message.service.ConversationService;
+import club.tempvs.message.service.StreamService;
 import com.google.common.collect.ImmutableSet;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,11 +11,15 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ConversationControllerTest {
@@ -23,6 +29,12 @@ public class ConversationControllerTest {
     @Mock
     private ConversationService conversationService;
     @Mock
+    private StreamService streamService;
+    @Mock
+    private SseEmitter sseEmitter;
+    @Mock
+    private WebRequest webRequest;
+    @Mock
     private CreateConversationDto createConversationDto;
     @Mock
     private GetConversationDto getConversationDto;
@@ -39,7 +51,7 @@ public class ConversationControllerTest {
 
     @Before
     public void setup() {
-        conversationController = new ConversationController(conversationService);
+        conversationController = new ConversationController(conversationService, streamService);
     }
 
     @Test
@@ -53,11 +65,11 @@ public class ConversationControllerTest {
         when(createConversationDto.getReceivers()).thenReturn(receiverIds);
         when(createConversationDto.getText()).thenReturn(text);
         when(createConversationDto.getName()).thenReturn(name);
-        when(conversationService.createConversation(receiverIds, name, text)).thenReturn(getConversationDto);
+        when(conversationService.createConversation(receiverIds, name, text, false)).thenReturn(getConversationDto);
 
-        GetConversationDto result = conversationController.createConversation(createConversationDto);
+        GetConversationDto result = conversationController.createConversation(createConversationDto, null);
 
-        verify(conversationService).createConversation(receiverIds, name, text);
+        verify(conversationService).createConversation(receiverIds, name, text, false);
         verifyNoMoreInteractions(conversationService);
 
         assertEquals("GetConversationDto is returned", result,getConversationDto);
@@ -69,23 +81,59 @@ public class ConversationControllerTest {
         int page = 0;
         int size = 40;
 
+        when(conversationService.getConversationVersion(id)).thenReturn("3-0-1f");
         when(conversationService.getConversation(id, page, size)).thenReturn(getConversationDto);
 
-        GetConversationDto result = conversationController.getConversation(id, page, size);
+        GetConversationDto result = conversationController.getConversation(id, page, size, null, null, webRequest);
 
+        verify(conversationService).getConversationVersion(id);
+        verify(webRequest).checkNotModified("3-0-1f");
         verify(conversationService).getConversation(id, page, size);
         verifyNoMoreInteractions(conversationService);
 
         assertEquals("Result is a conversation", getConversationDto, result);
     }
 
+    @Test
+    public void testGetConversationBeforeCursor() {
+        long id = 1L;
+        int page = 0;
+        int size = 40;
+        Cursor before = Cursor.parse("2019-01-01T00:00:00Z,5");
+
+        when(conversationService.getConversation(id, before, null, size)).thenReturn(getConversationDto);
+
+        GetConversationDto result = conversationController.getConversation(id, page, size, before, null, webRequest);
+
+        verify(conversationService).getConversationVersion(id);
+        verify(conversationService).getConversation(id, before, null, size);
+        verifyNoMoreInteractions(conversationService);
+
+        assertEquals("Result is a conversation", getConversationDto, result);
+    }
+
+    @Test
+    public void testGetConversationForUnchangedVersion() {
+        long id = 1L;
+
+        when(conversationService.getConversationVersion(id)).thenReturn("3-0-1f");
+        when(webRequest.checkNotModified("3-0-1f")).thenReturn(true);
+
+        GetConversationDto result = conversationController.getConversation(id, 0, 40, null, null, webRequest);
+
+        verify(conversationService).getConversationVersion(id);
+        verifyNoMoreInteractions(conversationService);
+
+        assertNull("Nothing is rendered for an unchanged conversation", result);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetConversationForWrongPaging() {
         long id = 1L;
         int page = 0;
         int size = 41;
 
-        conversationController.getConversation(id, page, size);
+        conversationController.getConversation(id, page, size, null, null, webRequest);
     }
 
     @Test
@@ -95,20 +143,51 @@ public class ConversationControllerTest {
 
         when(conversationService.getConversationsAttended(page, size)).thenReturn(getConversationsDto);
 
-        GetConversationsDto result = conversationController.getConversationsByParticipant(page, size);
+        GetConversationsDto result = conversationController.getConversationsByParticipant(page, size, null, webRequest);
 
+        verify(conversationService).getInboxVersion();
         verify(conversationService).getConversationsAttended(page, size);
         verifyNoMoreInteractions(conversationService);
 
         assertEquals("GetConversationsDto object is returned as a body", getConversationsDto, result);
     }
 
+    @Test
+    public void testGetConversationsByParticipantAfterCursor() {
+        int page = 0;
+        int size = 40;
+        Cursor after = Cursor.parse("2019-01-01T00:00:00Z,5");
+
+        when(conversationService.getConversationsAttended(after, size)).thenReturn(getConversationsDto);
+
+        GetConversationsDto result = conversationController.getConversationsByParticipant(page, size, after, webRequest);
+
+        verify(conversationService).getInboxVersion();
+        verify(conversationService).getConversationsAttended(after, size);
+        verifyNoMoreInteractions(conversationService);
+
+        assertEquals("GetConversationsDto object is returned as a body", getConversationsDto, result);
+    }
+
+    @Test
+    public void testGetConversationsByParticipantForUnchangedInbox() {
+        when(conversationService.getInboxVersion()).thenReturn("7-1f");
+        when(webRequest.checkNotModified("7-1f")).thenReturn(true);
+
+        GetConversationsDto result = conversationController.getConversationsByParticipant(0, 40, null, webRequest);
+
+        verify(conversationService).getInboxVersion();
+        verifyNoMoreInteractions(conversationService);
+
+        assertNull("Nothing is rendered for an unchanged inbox", result);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetConversationsByParticipantForLargeAmountOfDataBeingRetrieved() {
         int page = 0;
         int size = 200;
 
-        conversationController.getConversationsByParticipant(page, size);
+        conversationController.getConversationsByParticipant(page, size, null, webRequest);
     }
 
     @Test
@@ -117,11 +196,27 @@ public class ConversationControllerTest {
         String text = "new message text";
 
         when(addMessageDto.getText()).thenReturn(text);
-        when(conversationService.addMessage(conversationId, text)).thenReturn(getConversationDto);
+        when(conversationService.addMessage(conversationId, text, false)).thenReturn(getConversationDto);
+
+        GetConversationDto result = conversationController.addMessage(conversationId, addMessageDto, null);
+
+        verify(conversationService).addMessage(conversationId, text, false);
+        verifyNoMoreInteractions(conversationService);
+
+        assertEquals("GetConversationDto is returned", getConversationDto, result);
+    }
+
+    @Test
+    public void testAddMessageWithMinimalReturnPreference() {
+        Long conversationId = 2L;
+        String text = "new message text";
+
+        when(addMessageDto.getText()).thenReturn(text);
+        when(conversationService.addMessage(conversationId, text, true)).thenReturn(getConversationDto);
 
-        GetConversationDto result = conversationController.addMessage(conversationId, addMessageDto);
+        GetConversationDto result = conversationController.addMessage(conversationId, addMessageDto, "respond-async, return=minimal");
 
-        verify(conversationService).addMessage(conversationId, text);
+        verify(conversationService).addMessage(conversationId, text, true);
         verifyNoMoreInteractions(conversationService);
 
         assertEquals("GetConversationDto is returned", getConversationDto, result);
@@ -133,11 +228,11 @@ public class ConversationControllerTest {
         Set<Long> receiverIds = ImmutableSet.of(3L);
 
         when(addParticipantsDto.getParticipants()).thenReturn(receiverIds);
-        when(conversationService.addParticipants(conversationId, receiverIds)).thenReturn(getConversationDto);
+        when(conversationService.addParticipants(conversationId, receiverIds, false)).thenReturn(getConversationDto);
 
-        GetConversationDto result = conversationController.addParticipants(conversationId, addParticipantsDto);
+        GetConversationDto result = conversationController.addParticipants(conversationId, addParticipantsDto, null);
 
-        verify(conversationService).addParticipants(conversationId, receiverIds);
+        verify(conversationService).addParticipants(conversationId, receiverIds, false);
         verifyNoMoreInteractions(conversationService);
 
         assertEquals("GetConversationDto is returned as a result", getConversationDto,result);
@@ -148,11 +243,11 @@ public class ConversationControllerTest {
         Long conversationId = 1L;
         Long subjectId = 3L;
 
-        when(conversationService.removeParticipant(conversationId, subjectId)).thenReturn(getConversationDto);
+        when(conversationService.removeParticipant(conversationId, subjectId, false)).thenReturn(getConversationDto);
 
-        GetConversationDto result = conversationController.removeParticipant(conversationId, subjectId);
+        GetConversationDto result = conversationController.removeParticipant(conversationId, subjectId, null);
 
-        verify(conversationService).removeParticipant(conversationId, subjectId);
+        verify(conversationService).removeParticipant(conversationId, subjectId, false);
         verifyNoMoreInteractions(conversationService);
 
         assertEquals("GetConversationDto is returned as a result", getConversationDto, result);
@@ -172,17 +267,62 @@ public class ConversationControllerTest {
         assertEquals("3L returned as a response as a new conversations count", 200, result.getStatusCodeValue());
     }
 
+    @Test
+    public void testAwaitConversationsCountForChangedCount() {
+        CompletableFuture<Long> change = new CompletableFuture<>();
+
+        when(streamService.awaitUnreadCount()).thenReturn(change);
+        when(conversationService.countUpdatedConversationsPerParticipant()).thenReturn(3L);
+
+        DeferredResult<ResponseEntity> result = conversationController.awaitConversationsCount("\"2\"", 30L);
+
+        verify(streamService).awaitUnreadCount();
+        verify(conversationService).countUpdatedConversationsPerParticipant();
+        verifyNoMoreInteractions(streamService, conversationService);
+
+        assertEquals("The new count is returned at once", "3",
+                ((ResponseEntity) result.getResult()).getHeaders().getFirst("X-Total-Count"));
+        assertTrue("The caller stops waiting", change.isCancelled());
+    }
+
+    @Test
+    public void testAwaitConversationsCountForUnchangedCount() {
+        CompletableFuture<Long> change = new CompletableFuture<>();
+
+        when(streamService.awaitUnreadCount()).thenReturn(change);
+        when(conversationService.countUpdatedConversationsPerParticipant()).thenReturn(3L);
+
+        DeferredResult<ResponseEntity> result = conversationController.awaitConversationsCount("W/\"3\"", 30L);
+
+        assertFalse("The request is parked", result.hasResult());
+
+        change.complete(4L);
+
+        verify(streamService).awaitUnreadCount();
+        verify(conversationService).countUpdatedConversationsPerParticipant();
+        verifyNoMoreInteractions(streamService, conversationService);
+
+        ResponseEntity response = (ResponseEntity) result.getResult();
+        assertEquals("The changed count is returned", "4", response.getHeaders().getFirst("X-Total-Count"));
+        assertEquals("The count is tagged", "\"4\"", response.getHeaders().getETag());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAwaitConversationsCountForTooLongWait() {
+        conversationController.awaitConversationsCount("\"3\"", 61L);
+    }
+
     @Test
     public void testUpdateConversationName() {
         Long conversationId = 1L;
         String conversationName = "name";
 
         when(updateConversationNameDto.getName()).thenReturn(conversationName);
-        when(conversationService.rename(conversationId, conversationName)).thenReturn(getConversationDto);
+        when(conversationService.rename(conversationId, conversationName, false)).thenReturn(getConversationDto);
 
-        GetConversationDto result = conversationController.renameConversation(conversationId, updateConversationNameDto);
+        GetConversationDto result = conversationController.renameConversation(conversationId, updateConversationNameDto, null);
 
-        verify(conversationService).rename(conversationId, conversationName);
+        verify(conversationService).rename(conversationId, conversationName, false);
         verifyNoMoreInteractions(conversationService);
 
         assertEquals("GetConversationDto is returned as a result", getConversationDto, result);
@@ -200,4 +340,29 @@ public class ConversationControllerTest {
         verify(conversationService).markMessagesAsRead(conversationId, messageIds);
         verifyNoMoreInteractions(conversationService);
     }
+
+    @Test
+    public void testReadMessagesUpToCursor() {
+        Long conversationId = 1L;
+
+        when(readMessagesDto.getUpTo()).thenReturn("2019-01-01T00:00:00Z,3");
+
+        conversationController.readMessages(conversationId, readMessagesDto);
+
+        verify(conversationService).markMessagesAsRead(conversationId, Arrays.asList(3L));
+        verifyNoMoreInteractions(conversationService);
+    }
+
+    @Test
+    public void testStream() {
+        when(streamService.subscribe()).thenReturn(sseEmitter);
+
+        SseEmitter result = conversationController.stream();
+
+        verify(streamService).subscribe();
+        verifyNoMoreInteractions(streamService);
+        verifyZeroInteractions(conversationService);
+
+        assertEquals("The participant's emitter is returned", sseEmitter, result);
+    }
 }
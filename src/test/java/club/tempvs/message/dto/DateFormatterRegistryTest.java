@@ -0,0 +1,33 @@
+package club.tempvs.message.dto;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+
+public class DateFormatterRegistryTest {
+
+    private static final Instant INSTANT = Instant.parse("2019-01-15T10:15:30Z");
+
+    @Test
+    public void testFormat() {
+        String expected = INSTANT.atZone(ZoneId.of("Europe/Minsk"))
+                .format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT).withLocale(Locale.ENGLISH));
+
+        String result = DateFormatterRegistry.format(INSTANT, Locale.ENGLISH, "Europe/Minsk");
+
+        assertEquals("The date is rendered in the given zone and locale", expected, result);
+    }
+
+    @Test
+    public void testFormatForDifferentZones() {
+        String utcResult = DateFormatterRegistry.format(INSTANT, Locale.ENGLISH, "UTC");
+        String minskResult = DateFormatterRegistry.format(INSTANT, Locale.ENGLISH, "Europe/Minsk");
+
+        assertNotEquals("Formatters are not shared between zones", utcResult, minskResult);
+    }
+}
@@ -9,7 +9,9 @@ import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
 import club.tempvs.message.dto.GetConversationDto;
 import club.tempvs.message.dto.GetConversationsDto;
+import club.tempvs.message.dto.StreamEventDto;
 import club.tempvs.message.holder.UserHolder;
+import club.tempvs.message.model.Cursor;
 import club.tempvs.message.model.User;
 import club.tempvs.message.service.impl.ConversationServiceImpl;
 import club.tempvs.message.util.LocaleHelper;
@@ -61,11 +63,21 @@ public class ConversationServiceTest {
     private UserHolder userHolder;
     @Mock
     private User user;
+    @Mock
+    private ReadCursorService readCursorService;
+    @Mock
+    private UnreadCounterService unreadCounterService;
+    @Mock
+    private MembershipService membershipService;
+    @Mock
+    private ReadMarkerService readMarkerService;
+    @Mock
+    private StreamService streamService;
 
     @Before
     public void setup() {
         this.conversationService = new ConversationServiceImpl(objectFactory,
-                messageService, conversationRepository, localeHelper, validationHelper, participantService, userHolder);
+                messageService, conversationRepository, localeHelper, validationHelper, participantService, userHolder, readCursorService, unreadCounterService, membershipService, readMarkerService, streamService);
     }
 
     @Test
@@ -88,17 +100,68 @@ public class ConversationServiceTest {
         when(message.getCreatedDate()).thenReturn(Instant.now());
         when(messageService.getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE)).thenReturn(messages);
         when(conversationRepository.save(conversation)).thenReturn(conversation);
+        when(readCursorService.getLastReadOn(conversation, author)).thenReturn(Instant.EPOCH);
 
-        GetConversationDto result = conversationService.createConversation(receiverIds, name, text);
+        GetConversationDto result = conversationService.createConversation(receiverIds, name, text, false);
 
         verify(participantService).getParticipant(authorId);
         verify(participantService).getParticipants(receiverIds);
         verify(objectFactory).getInstance(Conversation.class);
         verify(messageService).createMessage(author, receivers, text, false, null, null);
-        verify(messageService).addMessage(conversation, message, author);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
         verify(conversationRepository).save(conversation);
-        verifyNoMoreInteractions(participantService, messageService, conversationRepository);
+        verify(conversationRepository).incrementVersions(anyCollection());
+        verify(readCursorService).createReadCursors(conversation, Collections.emptySet(), Instant.EPOCH);
+        verify(readCursorService).registerMessage(conversation, message);
+        verify(readCursorService).getLastReadOn(conversation, author);
+        verifyNoMoreInteractions(participantService, messageService, conversationRepository, readCursorService);
+
+        assertTrue("An instance of GetConversationDto is returned", result instanceof GetConversationDto);
+    }
+
+    @Test
+    public void testCreateConversationForExistingDialogue() {
+        Long authorId = 1L;
+        Long receiverId = 2L;
+        String text = "text";
+        Set<Long> receiverIds = new HashSet<>(Arrays.asList(receiverId));
+        Set<Participant> receivers = new HashSet<>(Arrays.asList(receiver));
+        List<Message> messages = Arrays.asList(message, message);
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(authorId);
+        when(user.getTimezone()).thenReturn("UTC");
+        when(participantService.getParticipant(authorId)).thenReturn(author);
+        when(participantService.getParticipants(receiverIds)).thenReturn(receivers);
+        when(author.getId()).thenReturn(authorId);
+        when(receiver.getId()).thenReturn(receiverId);
+        when(messageService.createMessage(author, receivers, text, false, null, null)).thenReturn(message);
+        when(conversationRepository.findByDialogueKey("1:2")).thenReturn(conversation);
+        when(messageService.addMessage(conversation, message)).thenReturn(conversation);
+        when(conversation.getId()).thenReturn(3L);
+        when(message.getAuthor()).thenReturn(author);
+        when(message.getCreatedDate()).thenReturn(Instant.now());
+        when(messageService.getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE)).thenReturn(messages);
+        when(conversationRepository.save(conversation)).thenReturn(conversation);
+        when(readCursorService.getLastReadOn(conversation, author)).thenReturn(Instant.EPOCH);
+
+        GetConversationDto result = conversationService.createConversation(receiverIds, null, text, false);
+
+        verify(participantService).getParticipant(authorId);
+        verify(participantService).getParticipants(receiverIds);
+        verify(messageService).createMessage(author, receivers, text, false, null, null);
+        verify(conversationRepository).findByDialogueKey("1:2");
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
+        verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
+        verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
+        verify(readCursorService).registerMessage(conversation, message);
+        verify(readCursorService).getLastReadOn(conversation, author);
+        verifyNoMoreInteractions(participantService, messageService, conversationRepository, readCursorService);
+        verifyZeroInteractions(objectFactory);
 
         assertTrue("An instance of GetConversationDto is returned", result instanceof GetConversationDto);
     }
@@ -115,15 +178,18 @@ public class ConversationServiceTest {
         when(userHolder.getUser()).thenReturn(user);
         when(user.getProfileId()).thenReturn(participantId);
         when(user.getTimezone()).thenReturn("UTC");
+        when(membershipService.isMember(conversationId, participantId)).thenReturn(true);
         when(participantService.getParticipant(participantId)).thenReturn(participant);
         when(conversation.getParticipants()).thenReturn(participants);
         when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
         when(message.getAuthor()).thenReturn(author);
         when(message.getCreatedDate()).thenReturn(Instant.now());
         when(messageService.getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE)).thenReturn(messages);
+        when(readCursorService.getLastReadOn(conversation, participant)).thenReturn(Instant.EPOCH);
 
         GetConversationDto result = conversationService.getConversation(conversationId, page, size);
 
+        verify(membershipService).isMember(conversationId, participantId);
         verify(participantService).getParticipant(participantId);
         verify(conversationRepository).findById(conversationId);
         verify(messageService).getMessagesFromConversation(conversation, page, size);
@@ -132,19 +198,71 @@ public class ConversationServiceTest {
         assertTrue("GetConversationDto is returned", result instanceof GetConversationDto);
     }
 
+    @Test
+    public void testGetConversationBeforeCursor() {
+        long conversationId = 1L;
+        int size = 20;
+        long participantId = 2L;
+        Cursor before = new Cursor(Instant.now(), 5L);
+        Set<Participant> participants = new HashSet<>(Arrays.asList(participant, receiver));
+        List<Message> messages = new ArrayList<>(Arrays.asList(message, message));
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(participantId);
+        when(user.getTimezone()).thenReturn("UTC");
+        when(membershipService.isMember(conversationId, participantId)).thenReturn(true);
+        when(participantService.getParticipant(participantId)).thenReturn(participant);
+        when(conversation.getParticipants()).thenReturn(participants);
+        when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
+        when(message.getAuthor()).thenReturn(author);
+        when(message.getCreatedDate()).thenReturn(Instant.now());
+        when(messageService.getMessagesBefore(conversation, before, size)).thenReturn(messages);
+        when(readCursorService.getLastReadOn(conversation, participant)).thenReturn(Instant.EPOCH);
+
+        GetConversationDto result = conversationService.getConversation(conversationId, before, null, size);
+
+        verify(membershipService).isMember(conversationId, participantId);
+        verify(participantService).getParticipant(participantId);
+        verify(conversationRepository).findById(conversationId);
+        verify(messageService).getMessagesBefore(conversation, before, size);
+        verifyNoMoreInteractions(conversationRepository, participantService, messageService);
+
+        assertEquals("Messages before the cursor are returned", 2, result.getMessages().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetConversationForBothCursors() {
+        Cursor cursor = new Cursor(Instant.now(), 5L);
+
+        conversationService.getConversation(1L, cursor, cursor, 20);
+    }
+
     @Test(expected = ForbiddenException.class)
     public void testGetConversationForWrongCaller() {
         long conversationId = 1L;
         int page = 0;
         int size = 40;
         long participantId = 2L;
-        Set<Participant> participants = new HashSet<>(Arrays.asList(receiver, oneMoreReceiver));
 
         when(userHolder.getUser()).thenReturn(user);
         when(user.getProfileId()).thenReturn(participantId);
-        when(participantService.getParticipant(participantId)).thenReturn(participant);
-        when(conversation.getParticipants()).thenReturn(participants);
-        when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
+        when(membershipService.isMember(conversationId, participantId)).thenReturn(false);
+        when(conversationRepository.existsById(conversationId)).thenReturn(true);
+
+        conversationService.getConversation(conversationId, page, size);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testGetConversationForMissingConversation() {
+        long conversationId = 1L;
+        int page = 0;
+        int size = 40;
+        long participantId = 2L;
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(participantId);
+        when(membershipService.isMember(conversationId, participantId)).thenReturn(false);
+        when(conversationRepository.existsById(conversationId)).thenReturn(false);
 
         conversationService.getConversation(conversationId, page, size);
     }
@@ -163,27 +281,78 @@ public class ConversationServiceTest {
         when(user.getTimezone()).thenReturn("UTC");
         when(participantService.getParticipant(participantId)).thenReturn(author);
         when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
+        when(conversation.getId()).thenReturn(conversationId);
         when(conversation.getParticipants()).thenReturn(participants);
         when(messageService.createMessage(author, receivers, text, false, null, null)).thenReturn(message);
-        when(messageService.addMessage(conversation, message, author)).thenReturn(conversation);
+        when(messageService.addMessage(conversation, message)).thenReturn(conversation);
         when(conversationRepository.save(conversation)).thenReturn(conversation);
         when(message.getAuthor()).thenReturn(author);
         when(message.getCreatedDate()).thenReturn(Instant.now());
         when(messageService.getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE)).thenReturn(messages);
 
-        GetConversationDto result = conversationService.addMessage(conversationId, text);
+        when(readCursorService.getLastReadOn(conversation, author)).thenReturn(Instant.EPOCH);
+
+        GetConversationDto result = conversationService.addMessage(conversationId, text, false);
 
         verify(conversationRepository).findById(conversationId);
         verify(participantService).getParticipant(participantId);
         verify(messageService).createMessage(author, receivers, text, false, null, null);
-        verify(messageService).addMessage(conversation, message, author);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
         verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
-        verifyNoMoreInteractions(messageService, participantService, conversationRepository);
+        verify(readCursorService).registerMessage(conversation, message);
+        verify(readCursorService).getLastReadOn(conversation, author);
+        verify(streamService).publish(anyList(), eq(StreamService.MESSAGE_EVENT), eq(StreamEventDto.ofConversation(conversationId)));
+        verify(streamService).publishUnreadCounts(anyList());
+        verifyNoMoreInteractions(messageService, participantService, conversationRepository, readCursorService, streamService);
 
         assertTrue("GetConversationDto is returned", result instanceof GetConversationDto);
     }
 
+    @Test
+    public void testAddMessageWithMinimalResponse() {
+        long conversationId = 1l;
+        String text = "text";
+        long participantId = 2l;
+        Set<Participant> receivers = new HashSet<>(Arrays.asList(receiver));
+        Set<Participant> participants = new HashSet<>(Arrays.asList(author, receiver));
+        List<Message> messages = new ArrayList<>(Arrays.asList(message));
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(participantId);
+        when(user.getTimezone()).thenReturn("UTC");
+        when(participantService.getParticipant(participantId)).thenReturn(author);
+        when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
+        when(conversation.getId()).thenReturn(conversationId);
+        when(conversation.getParticipants()).thenReturn(participants);
+        when(messageService.createMessage(author, receivers, text, false, null, null)).thenReturn(message);
+        when(messageService.addMessage(conversation, message)).thenReturn(conversation);
+        when(conversationRepository.save(conversation)).thenReturn(conversation);
+        when(message.getAuthor()).thenReturn(author);
+        when(message.getCreatedDate()).thenReturn(Instant.now());
+        when(conversation.getLastMessageCreatedDate()).thenReturn(Instant.now());
+        when(localeHelper.translateMessagesIfSystem(Arrays.asList(message))).thenReturn(messages);
+
+        GetConversationDto result = conversationService.addMessage(conversationId, text, true);
+
+        verify(conversationRepository).findById(conversationId);
+        verify(participantService).getParticipant(participantId);
+        verify(messageService).createMessage(author, receivers, text, false, null, null);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
+        verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
+        verify(readCursorService).registerMessage(conversation, message);
+        verify(localeHelper).translateMessagesIfSystem(Arrays.asList(message));
+        verify(streamService).publish(anyList(), eq(StreamService.MESSAGE_EVENT), eq(StreamEventDto.ofConversation(conversationId)));
+        verify(streamService).publishUnreadCounts(anyList());
+        verifyNoMoreInteractions(messageService, participantService, conversationRepository, readCursorService, streamService, localeHelper);
+
+        assertEquals("Only the created message is returned", 1, result.getMessages().size());
+    }
+
     @Test
     public void testGetConversationsByParticipant() {
         int page = 0;
@@ -193,12 +362,14 @@ public class ConversationServiceTest {
         conversations.add(conversation);
         Pageable pageable = PageRequest.of(page, size);
         List<Object[]> conversationsPerParticipant = new ArrayList<>();
-        conversationsPerParticipant.add(new Object[]{conversation, 3L});
+        conversationsPerParticipant.add(new Object[]{conversation, Instant.EPOCH, "conversant"});
 
         when(userHolder.getUser()).thenReturn(user);
         when(user.getProfileId()).thenReturn(participantId);
         when(participantService.getParticipant(participantId)).thenReturn(participant);
-        when(conversationRepository.findConversationsPerParticipant(participant, pageable)).thenReturn(conversationsPerParticipant);
+        when(conversationRepository.findConversationsPerParticipant(participantId, pageable)).thenReturn(conversationsPerParticipant);
+        when(messageService.countUnreadMessages(participant, conversations)).thenReturn(Collections.singletonMap(1L, 3L));
+        when(conversation.getId()).thenReturn(1L);
         when(conversation.getLastMessageCreatedDate()).thenReturn(Instant.now());
         when(conversation.getType()).thenReturn(CONFERENCE);
         when(user.getTimezone()).thenReturn("UTC");
@@ -207,13 +378,51 @@ public class ConversationServiceTest {
 
         verify(userHolder).getUser();
         verify(participantService).getParticipant(participantId);
-        verify(conversationRepository).findConversationsPerParticipant(participant, pageable);
+        verify(conversationRepository).findConversationsPerParticipant(participantId, pageable);
+        verify(messageService).countUnreadMessages(participant, conversations);
+        verify(conversation).setUnreadMessagesCount(3L);
         verify(localeHelper).translateMessageIfSystem(conversation);
-        verifyNoMoreInteractions(localeHelper, conversationRepository, userHolder, participantService);
+        verifyNoMoreInteractions(localeHelper, conversationRepository, userHolder, participantService, messageService);
 
         assertTrue("An GetConversationsDtoinstance is returned", result instanceof GetConversationsDto);
     }
 
+    @Test
+    public void testGetConversationsByParticipantAfterCursor() {
+        int size = 40;
+        long participantId = 1l;
+        Instant lastMessageCreatedDate = Instant.now();
+        Cursor after = new Cursor(lastMessageCreatedDate, 5L);
+        List<Conversation> conversations = new ArrayList<>();
+        conversations.add(conversation);
+        Pageable pageable = PageRequest.of(0, size);
+        List<Object[]> conversationsPerParticipant = new ArrayList<>();
+        conversationsPerParticipant.add(new Object[]{conversation, Instant.EPOCH, "conversant"});
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(participantId);
+        when(participantService.getParticipant(participantId)).thenReturn(participant);
+        when(conversationRepository.findConversationsPerParticipantAfter(participantId, lastMessageCreatedDate, 5L, pageable))
+                .thenReturn(conversationsPerParticipant);
+        when(messageService.countUnreadMessages(participant, conversations)).thenReturn(Collections.singletonMap(1L, 3L));
+        when(conversation.getId()).thenReturn(1L);
+        when(conversation.getLastMessageCreatedDate()).thenReturn(Instant.now());
+        when(conversation.getType()).thenReturn(CONFERENCE);
+        when(user.getTimezone()).thenReturn("UTC");
+
+        GetConversationsDto result = conversationService.getConversationsAttended(after, size);
+
+        verify(userHolder).getUser();
+        verify(participantService).getParticipant(participantId);
+        verify(conversationRepository).findConversationsPerParticipantAfter(participantId, lastMessageCreatedDate, 5L, pageable);
+        verify(messageService).countUnreadMessages(participant, conversations);
+        verify(conversation).setUnreadMessagesCount(3L);
+        verify(localeHelper).translateMessageIfSystem(conversation);
+        verifyNoMoreInteractions(localeHelper, conversationRepository, userHolder, participantService, messageService);
+
+        assertTrue("An GetConversationsDto instance is returned", result instanceof GetConversationsDto);
+    }
+
     @Test
     public void testAddParticipantToConversationOf2() {
         long conversationId = 1l;
@@ -240,7 +449,9 @@ public class ConversationServiceTest {
         when(message.getCreatedDate()).thenReturn(Instant.now());
         when(user.getTimezone()).thenReturn("UTC");
 
-        GetConversationDto result = conversationService.addParticipants(conversationId, addedIds);
+        when(readCursorService.getLastReadOn(conversation, author)).thenReturn(Instant.EPOCH);
+
+        GetConversationDto result = conversationService.addParticipants(conversationId, addedIds, false);
 
         verify(conversationRepository).findById(conversationId);
         verify(participantService).getParticipant(authorId);
@@ -249,8 +460,10 @@ public class ConversationServiceTest {
         verify(validationHelper).validateConversationCreation(author, receivers, message);
         verify(messageService).createMessage(author, receivers, text, true, null, null);
         verify(objectFactory).getInstance(Conversation.class);
-        verify(messageService).addMessage(conversation, message, author);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
         verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
         verifyNoMoreInteractions(participantService, messageService, conversationRepository, validationHelper);
 
@@ -276,6 +489,7 @@ public class ConversationServiceTest {
         when(participantService.getParticipants(addedIds)).thenReturn(participantsToAdd);
         when(conversation.getParticipants()).thenReturn(initialParticipants);
         when(conversation.getType()).thenReturn(Conversation.Type.CONFERENCE);
+        when(oneMoreReceiver.getId()).thenReturn(4L);
         when(messageService.createMessage(author, receivers, text, isSystem, null, oneMoreReceiver)).thenReturn(message);
         when(conversationRepository.save(conversation)).thenReturn(conversation);
         when(messageService.getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE)).thenReturn(messages);
@@ -283,15 +497,21 @@ public class ConversationServiceTest {
         when(message.getCreatedDate()).thenReturn(Instant.now());
         when(user.getTimezone()).thenReturn("UTC");
 
-        GetConversationDto result = conversationService.addParticipants(conversationId, addedIds);
+        when(readCursorService.getLastReadOn(conversation, author)).thenReturn(Instant.EPOCH);
+
+        GetConversationDto result = conversationService.addParticipants(conversationId, addedIds, false);
 
         verify(conversationRepository).findById(conversationId);
         verify(participantService).getParticipant(authorId);
         verify(participantService).getParticipants(addedIds);
         verify(validationHelper).validateParticipantsAddition(author, participantsToAdd, initialParticipants);
         verify(messageService).createMessage(author, receivers, text, isSystem, null, oneMoreReceiver);
-        verify(messageService).addMessage(conversation, message, author);
+        verify(readCursorService).createReadCursors(conversation, participantsToAdd, Instant.EPOCH);
+        verify(membershipService).evict(conversationId, 4L);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
         verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
         verifyNoMoreInteractions(participantService, messageService, conversationRepository, validationHelper);
 
@@ -320,21 +540,26 @@ public class ConversationServiceTest {
         when(participantService.getParticipant(initiatorId)).thenReturn(author);
         when(participantService.getParticipant(subjectId)).thenReturn(receiver);
         when(messageService.createMessage(author, receivers, text, isSystem, null, receiver)).thenReturn(message);
-        when(messageService.addMessage(conversation, message, author)).thenReturn(conversation);
+        when(messageService.addMessage(conversation, message)).thenReturn(conversation);
         when(conversationRepository.save(conversation)).thenReturn(conversation);
         when(message.getAuthor()).thenReturn(author);
         when(message.getCreatedDate()).thenReturn(Instant.now());
         when(messageService.getMessagesFromConversation(conversation, page, max)).thenReturn(messages);
+        when(readCursorService.getLastReadOn(conversation, author)).thenReturn(Instant.EPOCH);
 
-        GetConversationDto result = conversationService.removeParticipant(conversationId, subjectId);
+        GetConversationDto result = conversationService.removeParticipant(conversationId, subjectId, false);
 
         verify(participantService).getParticipant(initiatorId);
         verify(participantService).getParticipant(subjectId);
         verify(conversationRepository).findById(conversationId);
         verify(messageService).createMessage(author, receivers, text, isSystem, null, receiver);
-        verify(messageService).addMessage(conversation, message, author);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
         verify(messageService).getMessagesFromConversation(conversation, page, max);
+        verify(readCursorService).deleteReadCursor(conversation, receiver);
+        verify(membershipService).evict(conversationId, subjectId);
         verifyNoMoreInteractions(conversationRepository, messageService, participantService);
 
         assertTrue("GetConversationDto is returned as a result", result instanceof GetConversationDto);
@@ -358,18 +583,22 @@ public class ConversationServiceTest {
         when(conversation.getAdmin()).thenReturn(author);
         when(conversation.getParticipants()).thenReturn(participants);
         when(messageService.createMessage(author, receivers, text, isSystem, null, null)).thenReturn(message);
-        when(messageService.addMessage(conversation, message, author)).thenReturn(conversation);
+        when(messageService.addMessage(conversation, message)).thenReturn(conversation);
         when(conversationRepository.save(conversation)).thenReturn(conversation);
 
-        GetConversationDto result = conversationService.removeParticipant(conversationId, subjectId);
+        GetConversationDto result = conversationService.removeParticipant(conversationId, subjectId, false);
 
         verify(participantService).getParticipant(initiatorId);
         verify(participantService).getParticipant(subjectId);
         verify(conversationRepository).findById(conversationId);
         verify(messageService).createMessage(author, receivers, text, isSystem, null, null);
-        verify(messageService).addMessage(conversation, message, author);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
         verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
+        verify(readCursorService).deleteReadCursor(conversation, author);
+        verify(membershipService).evict(conversationId, subjectId);
         verifyNoMoreInteractions(participantService, messageService, conversationRepository);
 
         assertTrue("GetConversationDto is returned as a result", result instanceof GetConversationDto);
@@ -382,14 +611,13 @@ public class ConversationServiceTest {
 
         when(userHolder.getUser()).thenReturn(user);
         when(user.getProfileId()).thenReturn(participantId);
-        when(participantService.getParticipant(participantId)).thenReturn(participant);
-        when(conversationRepository.countByNewMessagesPerParticipant(participant)).thenReturn(conversationCount);
+        when(unreadCounterService.getUnreadConversationsCount(participantId)).thenReturn(conversationCount);
 
         long result = conversationService.countUpdatedConversationsPerParticipant();
 
-        verify(participantService).getParticipant(participantId);
-        verify(conversationRepository).countByNewMessagesPerParticipant(participant);
-        verifyNoMoreInteractions(participantService, conversationRepository);
+        verify(unreadCounterService).getUnreadConversationsCount(participantId);
+        verifyNoMoreInteractions(unreadCounterService);
+        verifyZeroInteractions(participantService, conversationRepository);
 
         assertEquals("3L is returned as a count of new conversations", conversationCount, result);
     }
@@ -408,16 +636,18 @@ public class ConversationServiceTest {
         when(conversation.getParticipants()).thenReturn(receivers);
         when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
         when(messageService.createMessage(participant, receivers, CONVERSATION_RENAMED, isSystem, name, null)).thenReturn(message);
-        when(messageService.addMessage(conversation, message, participant)).thenReturn(conversation);
+        when(messageService.addMessage(conversation, message)).thenReturn(conversation);
         when(conversationRepository.save(conversation)).thenReturn(conversation);
 
-        GetConversationDto result = conversationService.rename(conversationId, name);
+        GetConversationDto result = conversationService.rename(conversationId, name, false);
 
         verify(participantService).getParticipant(participantId);
         verify(conversationRepository).findById(conversationId);
         verify(messageService).createMessage(participant, receivers, CONVERSATION_RENAMED, isSystem, name, null);
-        verify(messageService).addMessage(conversation, message, participant);
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(conversationRepository).save(conversation);
+        verify(conversationRepository).incrementVersions(anyCollection());
         verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
         verifyNoMoreInteractions(participantService, messageService, conversationRepository);
 
@@ -438,45 +668,103 @@ public class ConversationServiceTest {
         when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
         when(messageService.createMessage(participant, receivers,
                 CONVERSATION_NAME_DROPPED, isSystem, null, null)).thenReturn(message);
-        when(messageService.addMessage(conversation, message, participant)).thenReturn(conversation);
+        when(messageService.addMessage(conversation, message)).thenReturn(conversation);
         when(conversationRepository.save(conversation)).thenReturn(conversation);
 
-        GetConversationDto result = conversationService.rename(conversationId, "");
+        GetConversationDto result = conversationService.rename(conversationId, "", false);
 
         verify(participantService).getParticipant(participantId);
         verify(conversationRepository).findById(conversationId);
         verify(messageService).createMessage(participant, receivers,
                 CONVERSATION_NAME_DROPPED, isSystem, null, null);        verify(conversationRepository).save(conversation);
-        verify(messageService).addMessage(conversation, message, participant);
+        verify(conversationRepository).incrementVersions(anyCollection());
+        verify(messageService).addMessage(conversation, message);
+        verify(messageService).saveMessages(Arrays.asList(message));
         verify(messageService).getMessagesFromConversation(conversation, DEFAULT_PAGE_NUMBER, MAX_PAGE_SIZE);
         verifyNoMoreInteractions(messageService, conversationRepository, participantService);
 
         assertTrue("GetConversationDto is returned as a result", result instanceof GetConversationDto);
     }
 
+    @Test
+    public void testGetConversationVersion() {
+        List<Object[]> versions = new ArrayList<>();
+        versions.add(new Object[]{3L, Instant.ofEpochMilli(5L)});
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(2L);
+        when(user.getLocale()).thenReturn(Locale.ENGLISH);
+        when(user.getTimezone()).thenReturn("UTC");
+        when(conversationRepository.findVersion(1L, 2L)).thenReturn(versions);
+
+        String result = conversationService.getConversationVersion(1L);
+
+        verify(conversationRepository).findVersion(1L, 2L);
+        verifyNoMoreInteractions(conversationRepository, messageService, participantService);
+
+        assertTrue("The version and the read position are tagged", result.startsWith("3-5-"));
+    }
+
+    @Test
+    public void testGetConversationVersionForNonMember() {
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(2L);
+
+        String result = conversationService.getConversationVersion(1L);
+
+        verify(conversationRepository).findVersion(1L, 2L);
+        verifyNoMoreInteractions(conversationRepository);
+
+        assertNull("No version is returned for a non-member", result);
+    }
+
+    @Test
+    public void testGetInboxVersion() {
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(2L);
+        when(user.getLocale()).thenReturn(Locale.ENGLISH);
+        when(user.getTimezone()).thenReturn("UTC");
+        when(unreadCounterService.getInboxVersion(2L)).thenReturn(7L);
+
+        String result = conversationService.getInboxVersion();
+
+        verify(unreadCounterService).getInboxVersion(2L);
+        verifyNoMoreInteractions(unreadCounterService);
+        verifyZeroInteractions(conversationRepository);
+
+        assertTrue("The inbox version is tagged", result.startsWith("7-"));
+    }
+
     @Test
     public void testMarkMessagesAsRead() {
         long conversationId = 1l;
         long participantId = 2l;
         List<Long> messageIds = Arrays.asList(2L, 3L);
-        List<Message> messages = Arrays.asList(message, message);
-        Set<Participant> participants = new HashSet<>(Arrays.asList(participant, receiver));
+        Instant createdDate = Instant.now();
 
         when(userHolder.getUser()).thenReturn(user);
         when(user.getProfileId()).thenReturn(participantId);
-        when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
-        when(participantService.getParticipant(participantId)).thenReturn(participant);
-        when(messageService.findMessagesByIds(messageIds)).thenReturn(messages);
-        when(message.getConversation()).thenReturn(conversation);
-        when(message.getCreatedDate()).thenReturn(Instant.now());
-        when(conversation.getParticipants()).thenReturn(participants);
+        when(membershipService.isMember(conversationId, participantId)).thenReturn(true);
+        when(messageService.getLastCreatedDate(conversationId, messageIds)).thenReturn(createdDate);
 
         conversationService.markMessagesAsRead(conversationId, messageIds);
 
-        verify(participantService).getParticipant(participantId);
-        verify(conversationRepository).findById(conversationId);
-        verify(messageService).findMessagesByIds(messageIds);
-        verify(conversationRepository).save(conversation);
-        verifyNoMoreInteractions(messageService, participantService, conversationRepository);
+        verify(membershipService).isMember(conversationId, participantId);
+        verify(messageService).getLastCreatedDate(conversationId, messageIds);
+        verify(readMarkerService).markAsRead(conversationId, participantId, createdDate);
+        verifyNoMoreInteractions(messageService, participantService, conversationRepository, readMarkerService);
+        verifyZeroInteractions(readCursorService);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMarkMessagesAsReadForEmptyList() {
+        long conversationId = 1l;
+        long participantId = 2l;
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(participantId);
+        when(membershipService.isMember(conversationId, participantId)).thenReturn(true);
+
+        conversationService.markMessagesAsRead(conversationId, Collections.emptyList());
     }
 }
@@ -0,0 +1,68 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.dao.ConversationRepository;
+import club.tempvs.message.service.impl.MembershipServiceImpl;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MembershipServiceTest {
+
+    private MembershipService membershipService;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Before
+    public void setup() {
+        this.membershipService = new MembershipServiceImpl(conversationRepository);
+    }
+
+    @Test
+    public void testIsMember() {
+        when(conversationRepository.existsByIdAndParticipant(1L, 2L)).thenReturn(true);
+
+        boolean firstResult = membershipService.isMember(1L, 2L);
+        boolean secondResult = membershipService.isMember(1L, 2L);
+
+        verify(conversationRepository).existsByIdAndParticipant(1L, 2L);
+        verifyNoMoreInteractions(conversationRepository);
+
+        assertTrue("The participant is a member", firstResult);
+        assertTrue("The cached answer is returned", secondResult);
+    }
+
+    @Test
+    public void testIsMemberForStranger() {
+        when(conversationRepository.existsByIdAndParticipant(1L, 2L)).thenReturn(false);
+
+        boolean firstResult = membershipService.isMember(1L, 2L);
+        boolean secondResult = membershipService.isMember(1L, 2L);
+
+        verify(conversationRepository, times(2)).existsByIdAndParticipant(1L, 2L);
+        verifyNoMoreInteractions(conversationRepository);
+
+        assertFalse("The participant is not a member", firstResult);
+        assertFalse("A negative answer is not cached", secondResult);
+    }
+
+    @Test
+    public void testEvict() {
+        when(conversationRepository.existsByIdAndParticipant(1L, 2L)).thenReturn(true, false);
+
+        boolean resultBeforeEviction = membershipService.isMember(1L, 2L);
+        membershipService.evict(1L, 2L);
+        boolean resultAfterEviction = membershipService.isMember(1L, 2L);
+
+        verify(conversationRepository, times(2)).existsByIdAndParticipant(1L, 2L);
+        verifyNoMoreInteractions(conversationRepository);
+
+        assertTrue("The participant is a member before eviction", resultBeforeEviction);
+        assertFalse("Membership is looked up again after eviction", resultAfterEviction);
+    }
+}
@@ -3,10 +3,13 @@ package club.tempvs.message.service;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
+import club.tempvs.message.api.ForbiddenException;
+import club.tempvs.message.dao.ConversationRepository;
 import club.tempvs.message.dao.MessageRepository;
 import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.domain.Participant;
+import club.tempvs.message.model.Cursor;
 import club.tempvs.message.service.impl.MessageServiceImpl;
 import club.tempvs.message.util.LocaleHelper;
 import club.tempvs.message.util.ObjectFactory;
@@ -19,6 +22,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
+import java.time.Instant;
 import java.util.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -38,10 +42,14 @@ public class MessageServiceTest {
     private MessageRepository messageRepository;
     @Mock
     private LocaleHelper localeHelper;
+    @Mock
+    private ConversationRepository conversationRepository;
+    @Mock
+    private UnreadCounterService unreadCounterService;
 
     @Before
     public void setup() {
-        this.messageService = new MessageServiceImpl(objectFactory, messageRepository, localeHelper);
+        this.messageService = new MessageServiceImpl(objectFactory, messageRepository, localeHelper, conversationRepository, unreadCounterService);
     }
 
     @Test
@@ -69,16 +77,16 @@ public class MessageServiceTest {
         when(message.getAuthor()).thenReturn(author);
         when(message.getSubject()).thenReturn(subject);
 
-        Conversation result = messageService.addMessage(conversation, message, author);
+        Conversation result = messageService.addMessage(conversation, message);
 
-        verify(conversation).addMessage(message);
         verify(conversation).setLastMessageText(any());
+        verify(conversation).setLastMessageAuthorId(any());
         verify(conversation).setLastMessageAuthorName(any());
+        verify(conversation).setLastMessageSubjectId(any());
         verify(conversation).setLastMessageSubjectName(any());
         verify(conversation).setLastMessageCreatedDate(any());
         verify(conversation).setLastMessageSystem(any());
         verify(conversation).setLastMessageSystemArgs(any());
-        verify(conversation).getLastReadOn();
         verify(message).setConversation(conversation);
         verify(message).getCreatedDate();
         verify(message).getText();
@@ -91,6 +99,20 @@ public class MessageServiceTest {
         assertEquals("Conversation object is returned", conversation, result);
     }
 
+    @Test
+    public void testSaveMessages() {
+        List<Message> messages = Arrays.asList(message1, message2);
+
+        when(messageRepository.saveAll(messages)).thenReturn(messages);
+
+        List<Message> result = messageService.saveMessages(messages);
+
+        verify(messageRepository).saveAll(messages);
+        verifyNoMoreInteractions(messageRepository, message1, message2);
+
+        assertEquals("A list of saved messages is returned", messages, result);
+    }
+
     @Test
     public void testGetMessagesFromConversation() {
         int page = 0;
@@ -100,17 +122,55 @@ public class MessageServiceTest {
         List<Message> translatedMessages = Arrays.asList(message2, message2, message2);
 
         when(messageRepository.findByConversation(conversation, pageable)).thenReturn(originalMessages);
-        when(localeHelper.translateMessageIfSystem(message1)).thenReturn(message2);
+        when(localeHelper.translateMessagesIfSystem(originalMessages)).thenReturn(translatedMessages);
 
         List<Message> result = messageService.getMessagesFromConversation(conversation, page, size);
 
         verify(messageRepository).findByConversation(conversation, pageable);
-        verify(localeHelper, times(3)).translateMessageIfSystem(message1);
+        verify(localeHelper).translateMessagesIfSystem(originalMessages);
         verifyNoMoreInteractions(message1, localeHelper, messageRepository);
 
         assertEquals("A list of messages is returned", translatedMessages, result);
     }
 
+    @Test
+    public void testGetMessagesBefore() {
+        Instant createdDate = Instant.now();
+        Cursor cursor = new Cursor(createdDate, 5L);
+        Pageable pageable = PageRequest.of(0, 20);
+        List<Message> messages = Arrays.asList(message1, message1);
+
+        when(messageRepository.findBefore(conversation, createdDate, 5L, pageable)).thenReturn(messages);
+        when(localeHelper.translateMessagesIfSystem(messages)).thenReturn(Arrays.asList(message2, message2));
+
+        List<Message> result = messageService.getMessagesBefore(conversation, cursor, 20);
+
+        verify(messageRepository).findBefore(conversation, createdDate, 5L, pageable);
+        verify(localeHelper).translateMessagesIfSystem(messages);
+        verifyNoMoreInteractions(message1, localeHelper, messageRepository);
+
+        assertEquals("A list of messages is returned", Arrays.asList(message2, message2), result);
+    }
+
+    @Test
+    public void testGetMessagesAfter() {
+        Instant createdDate = Instant.now();
+        Cursor cursor = new Cursor(createdDate, 5L);
+        Pageable pageable = PageRequest.of(0, 20);
+        List<Message> messages = Arrays.asList(message1, message2);
+
+        when(messageRepository.findAfter(conversation, createdDate, 5L, pageable)).thenReturn(messages);
+        when(localeHelper.translateMessagesIfSystem(messages)).thenReturn(new ArrayList<>(messages));
+
+        List<Message> result = messageService.getMessagesAfter(conversation, cursor, 20);
+
+        verify(messageRepository).findAfter(conversation, createdDate, 5L, pageable);
+        verify(localeHelper).translateMessagesIfSystem(messages);
+        verifyNoMoreInteractions(message1, message2, localeHelper, messageRepository);
+
+        assertEquals("Messages are returned newest first", Arrays.asList(message2, message1), result);
+    }
+
     @Test
     public void testFindMessagesByIds() {
         List<Long> ids = Arrays.asList(1L, 2L);
@@ -125,4 +185,104 @@ public class MessageServiceTest {
 
         assertEquals("A list of messages is returned.", result, messages);
     }
+
+    @Test
+    public void testGetLastCreatedDate() {
+        List<Long> ids = Arrays.asList(1L, 2L);
+        Instant createdDate = Instant.now();
+        List<Object[]> aggregate = new ArrayList<>();
+        aggregate.add(new Object[]{2L, 3L, 3L, createdDate});
+
+        when(messageRepository.aggregateByIds(ids)).thenReturn(aggregate);
+
+        Instant result = messageService.getLastCreatedDate(3L, ids);
+
+        verify(messageRepository).aggregateByIds(ids);
+        verifyNoMoreInteractions(messageRepository);
+
+        assertEquals("The latest creation date is returned", createdDate, result);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetLastCreatedDateForMissingMessages() {
+        List<Long> ids = Arrays.asList(1L, 2L);
+        List<Object[]> aggregate = new ArrayList<>();
+        aggregate.add(new Object[]{0L, null, null, null});
+
+        when(messageRepository.aggregateByIds(ids)).thenReturn(aggregate);
+
+        messageService.getLastCreatedDate(3L, ids);
+    }
+
+    @Test(expected = ForbiddenException.class)
+    public void testGetLastCreatedDateForForeignMessages() {
+        List<Long> ids = Arrays.asList(1L, 2L);
+        List<Object[]> aggregate = new ArrayList<>();
+        aggregate.add(new Object[]{2L, 3L, 4L, Instant.now()});
+
+        when(messageRepository.aggregateByIds(ids)).thenReturn(aggregate);
+
+        messageService.getLastCreatedDate(3L, ids);
+    }
+
+    @Test
+    public void testCountUnreadMessages() {
+        List<Conversation> conversations = Arrays.asList(conversation);
+        List<Object[]> counts = new ArrayList<>();
+        counts.add(new Object[]{1L, 3L});
+
+        when(author.getId()).thenReturn(2L);
+        when(conversation.getId()).thenReturn(1L);
+        when(messageRepository.countUnreadMessages(2L, Arrays.asList(1L))).thenReturn(counts);
+
+        Map<Long, Long> result = messageService.countUnreadMessages(author, conversations);
+
+        verify(messageRepository).countUnreadMessages(2L, Arrays.asList(1L));
+        verifyNoMoreInteractions(messageRepository);
+
+        assertEquals("Unread messages are counted per conversation", Collections.singletonMap(1L, 3L), result);
+    }
+
+    @Test
+    public void testCountUnreadMessagesForEmptyPage() {
+        Map<Long, Long> result = messageService.countUnreadMessages(author, Collections.emptyList());
+
+        verifyZeroInteractions(messageRepository);
+
+        assertTrue("An empty map is returned", result.isEmpty());
+    }
+
+    @Test
+    public void testRefreshLastMessageNames() {
+        Pageable pageable = PageRequest.of(0, 2);
+        List<Long> conversationIds = Arrays.asList(3L, 4L);
+
+        when(author.getId()).thenReturn(1L);
+        when(author.getName()).thenReturn("name");
+        when(conversationRepository.findIdsByLastMessageParticipant(1L, 0L, pageable)).thenReturn(conversationIds);
+
+        Long result = messageService.refreshLastMessageNames(author, 0L, 2);
+
+        verify(conversationRepository).findIdsByLastMessageParticipant(1L, 0L, pageable);
+        verify(conversationRepository).updateLastMessageAuthorName(conversationIds, 1L, "name");
+        verify(conversationRepository).updateLastMessageSubjectName(conversationIds, 1L, "name");
+        verify(unreadCounterService).touchInboxesOfMembers(conversationIds);
+        verifyNoMoreInteractions(conversationRepository, unreadCounterService);
+
+        assertEquals("The last conversation id of a full batch is returned", Long.valueOf(4L), result);
+    }
+
+    @Test
+    public void testRefreshLastMessageNamesForNoConversations() {
+        Pageable pageable = PageRequest.of(0, 2);
+
+        when(author.getId()).thenReturn(1L);
+
+        Long result = messageService.refreshLastMessageNames(author, 0L, 2);
+
+        verify(conversationRepository).findIdsByLastMessageParticipant(1L, 0L, pageable);
+        verifyNoMoreInteractions(conversationRepository);
+
+        assertNull("Null is returned when nothing is left", result);
+    }
 }
@@ -0,0 +1,62 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.service.impl.NamePropagationServiceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NamePropagationServiceTest {
+
+    private static final int BATCH_SIZE = 500;
+
+    private NamePropagationServiceImpl namePropagationService;
+
+    @Mock
+    private MessageService messageService;
+    @Mock
+    private ReadCursorService readCursorService;
+
+    @Before
+    public void setup() {
+        this.namePropagationService = new NamePropagationServiceImpl(messageService, readCursorService);
+    }
+
+    @After
+    public void cleanup() {
+        namePropagationService.shutdown();
+    }
+
+    @Test
+    public void testPropagateNames() {
+        Participant participant = new Participant(1L, "new name", "CLUB", "ANTIQUITY");
+
+        when(messageService.refreshLastMessageNames(participant, 0L, BATCH_SIZE)).thenReturn(7L);
+        when(readCursorService.refreshConversants(participant, 0L, BATCH_SIZE)).thenReturn(9L);
+
+        namePropagationService.propagateNames(Arrays.asList(participant));
+
+        verify(readCursorService, timeout(1000)).refreshConversants(participant, 9L, BATCH_SIZE);
+        InOrder inOrder = inOrder(messageService, readCursorService);
+        inOrder.verify(messageService).refreshLastMessageNames(participant, 0L, BATCH_SIZE);
+        inOrder.verify(messageService).refreshLastMessageNames(participant, 7L, BATCH_SIZE);
+        inOrder.verify(readCursorService).refreshConversants(participant, 0L, BATCH_SIZE);
+        inOrder.verify(readCursorService).refreshConversants(participant, 9L, BATCH_SIZE);
+        verifyNoMoreInteractions(messageService, readCursorService);
+    }
+
+    @Test
+    public void testPropagateNamesForEmptyInput() {
+        namePropagationService.propagateNames(Collections.emptyList());
+
+        verifyZeroInteractions(messageService, readCursorService);
+    }
+}
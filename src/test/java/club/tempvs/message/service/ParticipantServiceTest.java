@@ -2,9 +2,14 @@ package club.tempvs.message.service;
 
 import static java.util.Collections.emptySet;
 
+import club.tempvs.message.bus.EventBus;
+import club.tempvs.message.bus.impl.LocalEventBus;
 import club.tempvs.message.dao.ParticipantRepository;
 import club.tempvs.message.domain.Participant;
+import club.tempvs.message.model.ConversationEvent;
 import club.tempvs.message.service.impl.ParticipantServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,29 +24,58 @@ import java.util.*;
 public class ParticipantServiceTest {
 
     private ParticipantService participantService;
+    private MeterRegistry meterRegistry;
+    private EventBus eventBus;
+    private List<ConversationEvent> events;
 
     @Mock
     private Participant participant;
     @Mock
     private ParticipantRepository participantRepository;
+    @Mock
+    private UnreadCounterService unreadCounterService;
+    @Mock
+    private NamePropagationService namePropagationService;
 
     @Before
     public void setup() {
-        this.participantService = new ParticipantServiceImpl(participantRepository);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.eventBus = new LocalEventBus();
+        this.events = new ArrayList<>();
+        this.participantService = new ParticipantServiceImpl(
+                participantRepository, unreadCounterService, namePropagationService, eventBus, meterRegistry);
+        eventBus.subscribe(events::add);
     }
 
     @Test
     public void testGetParticipant() {
         when(participantRepository.findById(1L)).thenReturn(Optional.of(participant));
+        when(participant.getId()).thenReturn(1L);
 
         Participant result = participantService.getParticipant(1L);
 
         verify(participantRepository).findById(1L);
-        verifyNoMoreInteractions(participant, participantRepository);
+        verifyNoMoreInteractions(participantRepository);
 
         assertEquals("A participant instance is returned", result, participant);
     }
 
+    @Test
+    public void testGetParticipantFromCache() {
+        when(participantRepository.findById(1L)).thenReturn(Optional.of(participant));
+        when(participant.getId()).thenReturn(1L);
+
+        participantService.getParticipant(1L);
+        Participant result = participantService.getParticipant(1L);
+
+        verify(participantRepository).findById(1L);
+        verifyNoMoreInteractions(participantRepository);
+
+        assertEquals("The cached participant is returned", participant, result);
+        assertEquals("One lookup is a miss", 1.0, cacheGets("miss"), 0.0);
+        assertEquals("One lookup is a hit", 1.0, cacheGets("hit"), 0.0);
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testGetParticipantForNullInput() {
         participantService.getParticipant(null);
@@ -69,17 +103,26 @@ public class ParticipantServiceTest {
 
         when(participantRepository.findById(participantId)).thenReturn(Optional.of(participant));
         when(participantRepository.save(participant)).thenReturn(participant);
+        when(participant.getId()).thenReturn(participantId);
 
         Participant result = participantService.refreshParticipant(participantId, name, type, period);
+        Participant cachedParticipant = participantService.getParticipant(participantId);
 
         verify(participantRepository).findById(participantId);
+        verify(participant).getName();
+        verify(participant, times(2)).getId();
         verify(participant).setName(name);
         verify(participant).setType(type);
         verify(participant).setPeriod(period);
         verify(participantRepository).save(participant);
-        verifyNoMoreInteractions(participant, participantRepository);
+        verify(namePropagationService).propagateNames(Collections.singletonList(participant));
+        verifyNoMoreInteractions(participant, participantRepository, namePropagationService);
+        verifyZeroInteractions(unreadCounterService);
 
         assertEquals("A participant instance is returned", result, participant);
+        assertEquals("The refreshed participant is written through to the cache", participant, cachedParticipant);
+        assertEquals("The change is announced to the other nodes",
+                Collections.singletonList(buildParticipantsEvent(participantId)), events);
     }
 
     public void testRefreshParticipantForNonExistent() {
@@ -96,11 +139,113 @@ public class ParticipantServiceTest {
 
         verify(participantRepository).findById(participantId);
         verify(participantRepository).save(participant);
-        verifyNoMoreInteractions(participantRepository);
+        verify(unreadCounterService).createUnreadCounter(participant);
+        verifyNoMoreInteractions(participantRepository, unreadCounterService);
 
         assertEquals("A newly created participant is returned", participant, result);
     }
 
+    @Test
+    public void testRefreshParticipantUnchanged() {
+        Long participantId = 1L;
+        String name = "firstName lastName";
+
+        when(participantRepository.findById(participantId)).thenReturn(Optional.of(participant));
+        when(participant.getName()).thenReturn(name);
+        when(participant.getType()).thenReturn("type");
+        when(participant.getPeriod()).thenReturn("period");
+        when(participant.getId()).thenReturn(participantId);
+        when(participantRepository.save(participant)).thenReturn(participant);
+
+        participantService.refreshParticipant(participantId, name, "type", "period");
+
+        verify(participantRepository).save(participant);
+        verifyZeroInteractions(namePropagationService, unreadCounterService);
+
+        assertTrue("Nothing is announced", events.isEmpty());
+    }
+
+    @Test
+    public void testRefreshParticipantWithNewPeriod() {
+        Long participantId = 1L;
+        String name = "firstName lastName";
+
+        when(participantRepository.findById(participantId)).thenReturn(Optional.of(participant));
+        when(participant.getName()).thenReturn(name);
+        when(participant.getType()).thenReturn("type");
+        when(participant.getPeriod()).thenReturn("old period");
+        when(participant.getId()).thenReturn(participantId);
+        when(participantRepository.save(participant)).thenReturn(participant);
+
+        participantService.refreshParticipant(participantId, name, "type", "period");
+
+        verify(participantRepository).save(participant);
+        verify(namePropagationService).propagateNames(Collections.singletonList(participant));
+        verifyNoMoreInteractions(namePropagationService);
+        verifyZeroInteractions(unreadCounterService);
+    }
+
+    @Test
+    public void testRefreshParticipants() {
+        Participant existingParticipant = new Participant(1L, "new name", "type", "period");
+        Participant newParticipant = new Participant(2L, "name", "type", "period");
+        Set<Long> participantIds = new HashSet<>(Arrays.asList(1L, 2L));
+
+        when(participant.getId()).thenReturn(1L);
+        when(participantRepository.findAllById(participantIds)).thenReturn(Arrays.asList(participant));
+
+        participantService.refreshParticipants(Arrays.asList(existingParticipant, newParticipant));
+        Set<Participant> cachedParticipants = participantService.getParticipants(participantIds);
+
+        verify(participantRepository).findAllById(participantIds);
+        verify(participant).setName("new name");
+        verify(participant).setType("type");
+        verify(participant).setPeriod("period");
+        verify(participantRepository).saveAll(Arrays.asList(newParticipant));
+        verify(participantRepository).flush();
+        verify(unreadCounterService).createUnreadCounters(Arrays.asList(2L));
+        verify(namePropagationService).propagateNames(Arrays.asList(participant));
+        verifyNoMoreInteractions(participantRepository, unreadCounterService, namePropagationService);
+
+        assertEquals("Refreshed participants are written through to the cache",
+                new HashSet<>(Arrays.asList(participant, newParticipant)), cachedParticipants);
+        assertEquals("Only the changed participants are announced",
+                Collections.singletonList(buildParticipantsEvent(1L)), events);
+    }
+
+    @Test
+    public void testParticipantsEventEvictsCache() {
+        when(participantRepository.findById(1L)).thenReturn(Optional.of(participant));
+        when(participant.getId()).thenReturn(1L);
+
+        participantService.getParticipant(1L);
+        eventBus.publish(buildParticipantsEvent(1L));
+        participantService.getParticipant(1L);
+
+        verify(participantRepository, times(2)).findById(1L);
+        verifyNoMoreInteractions(participantRepository);
+    }
+
+    @Test
+    public void testOtherEventsKeepCache() {
+        when(participantRepository.findById(1L)).thenReturn(Optional.of(participant));
+        when(participant.getId()).thenReturn(1L);
+
+        participantService.getParticipant(1L);
+        eventBus.publish(new ConversationEvent(2L, Collections.singletonList(1L), StreamService.MESSAGE_EVENT, null));
+        participantService.getParticipant(1L);
+
+        verify(participantRepository).findById(1L);
+        verifyNoMoreInteractions(participantRepository);
+    }
+
+    @Test
+    public void testRefreshParticipantsForEmptyInput() {
+        participantService.refreshParticipants(Collections.emptyList());
+
+        verifyZeroInteractions(participantRepository, unreadCounterService, namePropagationService);
+    }
+
     @Test
     public void testGetParticipants() {
         Set<Long> participantIds = new HashSet<>(Arrays.asList(1L, 2L, 3L));
@@ -108,15 +253,35 @@ public class ParticipantServiceTest {
         List<Participant> participantList = Arrays.asList(participant);
 
         when(participantRepository.findAllById(participantIds)).thenReturn(participantList);
+        when(participant.getId()).thenReturn(1L);
 
         Set<Participant> result = participantService.getParticipants(participantIds);
 
         verify(participantRepository).findAllById(participantIds);
-        verifyNoMoreInteractions(participant, participantRepository);
+        verifyNoMoreInteractions(participantRepository);
 
         assertEquals("A set of participants is returned", participantSet, result);
     }
 
+    @Test
+    public void testGetParticipantsFromCache() {
+        Participant cachedParticipant = new Participant(1L, "cached", "CLUB", "ANTIQUITY");
+        Participant missingParticipant = new Participant(2L, "missing", "CLUB", "ANTIQUITY");
+
+        when(participantRepository.findById(1L)).thenReturn(Optional.of(cachedParticipant));
+        when(participantRepository.findAllById(Collections.singleton(2L))).thenReturn(Arrays.asList(missingParticipant));
+
+        participantService.getParticipant(1L);
+        Set<Participant> result = participantService.getParticipants(new HashSet<>(Arrays.asList(1L, 2L)));
+
+        verify(participantRepository).findById(1L);
+        verify(participantRepository).findAllById(Collections.singleton(2L));
+        verifyNoMoreInteractions(participantRepository);
+
+        assertEquals("Cached and loaded participants are returned",
+                new HashSet<>(Arrays.asList(cachedParticipant, missingParticipant)), result);
+    }
+
     @Test
     public void testGetParticipantsForNullInput() {
         Set<Participant> result = participantService.getParticipants(null);
@@ -143,4 +308,12 @@ public class ParticipantServiceTest {
 
         participantService.getParticipants(participantIds);
     }
+
+    private ConversationEvent buildParticipantsEvent(Long participantId) {
+        return new ConversationEvent(null, Collections.singletonList(participantId), ParticipantService.PARTICIPANTS_EVENT, null);
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).functionCounter().count();
+    }
 }
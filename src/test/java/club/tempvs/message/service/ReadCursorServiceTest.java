@@ -0,0 +1,263 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.dao.ConversationRepository;
+import club.tempvs.message.dao.ReadCursorRepository;
+import club.tempvs.message.domain.Conversation;
+import club.tempvs.message.domain.Message;
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.domain.ReadCursor;
+import club.tempvs.message.service.impl.ReadCursorServiceImpl;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReadCursorServiceTest {
+
+    private ReadCursorService readCursorService;
+
+    @Mock
+    private Conversation conversation;
+    @Mock
+    private Message message;
+    @Mock
+    private Participant participant, receiver, member;
+    @Mock
+    private ReadCursorRepository readCursorRepository;
+    @Mock
+    private UnreadCounterService unreadCounterService;
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Before
+    public void setup() {
+        this.readCursorService = new ReadCursorServiceImpl(readCursorRepository, unreadCounterService, conversationRepository);
+    }
+
+    @Test
+    public void testCreateReadCursors() {
+        Instant lastMessageCreatedDate = Instant.now();
+        Set<Participant> participants = new LinkedHashSet<>(Arrays.asList(participant, receiver));
+        List<ReadCursor> readCursors = Arrays.asList(
+                new ReadCursor(1L, 2L, Instant.EPOCH, true, lastMessageCreatedDate, "receiver"),
+                new ReadCursor(1L, 3L, Instant.EPOCH, true, lastMessageCreatedDate, "participant"));
+
+        when(conversation.getId()).thenReturn(1L);
+        when(conversation.getLastMessageCreatedDate()).thenReturn(lastMessageCreatedDate);
+        when(conversation.getParticipants()).thenReturn(participants);
+        when(participant.getId()).thenReturn(2L);
+        when(participant.getName()).thenReturn("participant");
+        when(receiver.getId()).thenReturn(3L);
+        when(receiver.getName()).thenReturn("receiver");
+
+        readCursorService.createReadCursors(conversation, participants, Instant.EPOCH);
+
+        verify(readCursorRepository).saveAll(readCursors);
+        verify(unreadCounterService).increment(Arrays.asList(2L, 3L));
+        verifyNoMoreInteractions(readCursorRepository, unreadCounterService);
+    }
+
+    @Test
+    public void testRegisterMessage() {
+        Instant createdDate = Instant.now();
+        ReadCursor authorCursor = new ReadCursor(1L, 2L, Instant.EPOCH, true, Instant.EPOCH, null);
+        ReadCursor readCursor = new ReadCursor(1L, 3L, Instant.EPOCH, false, Instant.EPOCH, null);
+        ReadCursor unreadCursor = new ReadCursor(1L, 4L, Instant.EPOCH, true, Instant.EPOCH, null);
+
+        when(conversation.getId()).thenReturn(1L);
+        when(conversation.getLastMessageCreatedDate()).thenReturn(createdDate);
+        when(conversation.getParticipants()).thenReturn(new LinkedHashSet<>(Arrays.asList(member, receiver, participant)));
+        when(message.getAuthor()).thenReturn(participant);
+        when(message.getCreatedDate()).thenReturn(createdDate);
+        when(participant.getId()).thenReturn(2L);
+        when(participant.getName()).thenReturn("participant");
+        when(receiver.getId()).thenReturn(3L);
+        when(receiver.getName()).thenReturn("receiver");
+        when(member.getId()).thenReturn(4L);
+        when(member.getName()).thenReturn("member");
+        when(readCursorRepository.findForUpdate(1L)).thenReturn(Arrays.asList(authorCursor, readCursor, unreadCursor));
+
+        readCursorService.registerMessage(conversation, message);
+
+        verify(readCursorRepository).findForUpdate(1L);
+        verify(unreadCounterService).decrement(2L);
+        verify(unreadCounterService).increment(Arrays.asList(3L));
+        verifyNoMoreInteractions(readCursorRepository, unreadCounterService);
+
+        assertEquals("Author's cursor is moved to the new message", createdDate, authorCursor.getLastReadOn());
+        assertFalse("Author's cursor is read", authorCursor.getUnread());
+        assertTrue("Receiver's cursor is unread", readCursor.getUnread());
+        assertTrue("Receiver's cursor stays unread", unreadCursor.getUnread());
+        assertEquals("Sort key is moved to the new message", createdDate, readCursor.getLastMessageCreatedDate());
+        assertEquals("Author's conversant lists the other members by id", "receiver, member", authorCursor.getConversant());
+        assertEquals("Receiver's conversant excludes the receiver", "participant, member", readCursor.getConversant());
+    }
+
+    @Test
+    public void testMarkAsRead() {
+        Instant lastReadOn = Instant.now();
+
+        when(readCursorRepository.advanceLastReadOn(1L, 2L, lastReadOn)).thenReturn(1);
+        when(readCursorRepository.clearUnread(1L, 2L)).thenReturn(1);
+
+        readCursorService.markAsRead(1L, 2L, lastReadOn);
+
+        verify(readCursorRepository).advanceLastReadOn(1L, 2L, lastReadOn);
+        verify(readCursorRepository).clearUnread(1L, 2L);
+        verify(unreadCounterService).decrement(2L);
+        verify(unreadCounterService).touchInboxes(Arrays.asList(2L));
+        verifyNoMoreInteractions(readCursorRepository, unreadCounterService);
+    }
+
+    @Test
+    public void testMarkAsReadForOlderMessage() {
+        Instant lastReadOn = Instant.now();
+
+        when(readCursorRepository.advanceLastReadOn(1L, 2L, lastReadOn)).thenReturn(1);
+
+        readCursorService.markAsRead(1L, 2L, lastReadOn);
+
+        verify(readCursorRepository).advanceLastReadOn(1L, 2L, lastReadOn);
+        verify(readCursorRepository).clearUnread(1L, 2L);
+        verify(unreadCounterService).touchInboxes(Arrays.asList(2L));
+        verifyNoMoreInteractions(readCursorRepository, unreadCounterService);
+    }
+
+    @Test
+    public void testMarkAsReadBehindCursor() {
+        Instant lastReadOn = Instant.now();
+
+        readCursorService.markAsRead(1L, 2L, lastReadOn);
+
+        verify(readCursorRepository).advanceLastReadOn(1L, 2L, lastReadOn);
+        verifyNoMoreInteractions(readCursorRepository);
+        verifyZeroInteractions(unreadCounterService);
+    }
+
+    @Test
+    public void testMarkAsReadForBufferedPositions() {
+        Instant lastReadOn = Instant.now();
+        Map<ReadCursor.Key, Instant> lastReadOns = new LinkedHashMap<>();
+        lastReadOns.put(new ReadCursor.Key(1L, 2L), lastReadOn);
+        lastReadOns.put(new ReadCursor.Key(3L, 2L), lastReadOn);
+
+        when(readCursorRepository.advanceLastReadOn(1L, 2L, lastReadOn)).thenReturn(1);
+        when(readCursorRepository.clearUnread(1L, 2L)).thenReturn(1);
+
+        readCursorService.markAsRead(lastReadOns);
+
+        verify(readCursorRepository).advanceLastReadOn(1L, 2L, lastReadOn);
+        verify(readCursorRepository).clearUnread(1L, 2L);
+        verify(readCursorRepository).advanceLastReadOn(3L, 2L, lastReadOn);
+        verify(unreadCounterService).decrement(2L);
+        verify(unreadCounterService).touchInboxes(Arrays.asList(2L));
+        verifyNoMoreInteractions(readCursorRepository, unreadCounterService);
+    }
+
+    @Test
+    public void testGetLastReadOn() {
+        Instant lastReadOn = Instant.now();
+
+        when(conversation.getId()).thenReturn(1L);
+        when(participant.getId()).thenReturn(2L);
+        when(readCursorRepository.findLastReadOn(1L, 2L)).thenReturn(lastReadOn);
+
+        Instant result = readCursorService.getLastReadOn(conversation, participant);
+
+        verify(readCursorRepository).findLastReadOn(1L, 2L);
+        verifyNoMoreInteractions(readCursorRepository);
+
+        assertEquals("The stored read position is returned", lastReadOn, result);
+    }
+
+    @Test
+    public void testGetLastReadOnForMissingCursor() {
+        when(conversation.getId()).thenReturn(1L);
+        when(participant.getId()).thenReturn(2L);
+
+        Instant result = readCursorService.getLastReadOn(conversation, participant);
+
+        verify(readCursorRepository).findLastReadOn(1L, 2L);
+        verifyNoMoreInteractions(readCursorRepository);
+
+        assertEquals("Instant.MIN is returned", Instant.MIN, result);
+    }
+
+    @Test
+    public void testDeleteReadCursor() {
+        ReadCursor readCursor = new ReadCursor(1L, 2L, Instant.EPOCH, true, Instant.EPOCH, null);
+
+        when(conversation.getId()).thenReturn(1L);
+        when(participant.getId()).thenReturn(2L);
+        when(readCursorRepository.findById(new ReadCursor.Key(1L, 2L))).thenReturn(Optional.of(readCursor));
+
+        readCursorService.deleteReadCursor(conversation, participant);
+
+        verify(readCursorRepository).findById(new ReadCursor.Key(1L, 2L));
+        verify(unreadCounterService).decrement(2L);
+        verify(readCursorRepository).delete(readCursor);
+        verifyNoMoreInteractions(readCursorRepository, unreadCounterService);
+    }
+
+    @Test
+    public void testRefreshConversants() {
+        Pageable pageable = PageRequest.of(0, 2);
+        Participant renamed = new Participant(2L, "new name", "CLUB", "ANTIQUITY");
+        Participant other = new Participant(3L, "other", "CLUB", "ANTIQUITY");
+        List<Object[]> members = Arrays.asList(new Object[]{1L, renamed}, new Object[]{1L, other});
+
+        when(readCursorRepository.findConversationIds(2L, 0L, pageable)).thenReturn(Arrays.asList(1L));
+        when(readCursorRepository.findMembers(Arrays.asList(1L))).thenReturn(members);
+
+        Long result = readCursorService.refreshConversants(renamed, 0L, 2);
+
+        verify(readCursorRepository).findConversationIds(2L, 0L, pageable);
+        verify(readCursorRepository).findMembers(Arrays.asList(1L));
+        verify(readCursorRepository).updateConversant(1L, 3L, "new name");
+        verify(readCursorRepository).updateConversant(1L, 2L, "other");
+        verify(conversationRepository).incrementVersions(Arrays.asList(1L));
+        verify(unreadCounterService).touchInboxesOfMembers(Arrays.asList(1L));
+        verifyNoMoreInteractions(readCursorRepository, conversationRepository, unreadCounterService);
+
+        assertNull("Null is returned for the last batch", result);
+    }
+
+    @Test
+    public void testRefreshConversantsForFullBatch() {
+        Pageable pageable = PageRequest.of(0, 2);
+
+        when(participant.getId()).thenReturn(2L);
+        when(readCursorRepository.findConversationIds(2L, 0L, pageable)).thenReturn(Arrays.asList(1L, 5L));
+
+        Long result = readCursorService.refreshConversants(participant, 0L, 2);
+
+        verify(readCursorRepository).findConversationIds(2L, 0L, pageable);
+        verify(readCursorRepository).findMembers(Arrays.asList(1L, 5L));
+        verifyNoMoreInteractions(readCursorRepository);
+
+        assertEquals("The last conversation id of the batch is returned", Long.valueOf(5L), result);
+    }
+
+    @Test
+    public void testRefreshConversantsForNoConversations() {
+        Pageable pageable = PageRequest.of(0, 2);
+
+        when(participant.getId()).thenReturn(2L);
+
+        Long result = readCursorService.refreshConversants(participant, 0L, 2);
+
+        verify(readCursorRepository).findConversationIds(2L, 0L, pageable);
+        verifyNoMoreInteractions(readCursorRepository);
+
+        assertNull("Null is returned when nothing is left", result);
+    }
+}
@@ -0,0 +1,103 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.domain.ReadCursor;
+import club.tempvs.message.service.impl.ReadMarkerServiceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Instant;
+import java.util.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReadMarkerServiceTest {
+
+    private ReadMarkerServiceImpl readMarkerService;
+
+    @Mock
+    private ReadCursorService readCursorService;
+    @Mock
+    private StreamService streamService;
+
+    @Before
+    public void setup() {
+        this.readMarkerService = new ReadMarkerServiceImpl(readCursorService, streamService, 1000L);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        readMarkerService.shutdown();
+    }
+
+    @Test
+    public void testFlush() {
+        Instant first = Instant.now();
+        Instant second = first.plusSeconds(1);
+        Map<ReadCursor.Key, Instant> lastReadOns = new HashMap<>();
+        lastReadOns.put(new ReadCursor.Key(1L, 2L), second);
+        lastReadOns.put(new ReadCursor.Key(3L, 2L), first);
+
+        readMarkerService.markAsRead(1L, 2L, first);
+        readMarkerService.markAsRead(1L, 2L, second);
+        readMarkerService.markAsRead(1L, 2L, first);
+        readMarkerService.markAsRead(3L, 2L, first);
+        readMarkerService.flush();
+        readMarkerService.flush();
+
+        verify(readCursorService).markAsRead(lastReadOns);
+        verify(streamService).publishUnreadCounts(Collections.singleton(2L));
+        verifyNoMoreInteractions(readCursorService, streamService);
+    }
+
+    @Test
+    public void testFlushForFailedWrite() {
+        Instant lastReadOn = Instant.now();
+        Map<ReadCursor.Key, Instant> lastReadOns = Collections.singletonMap(new ReadCursor.Key(1L, 2L), lastReadOn);
+
+        doThrow(new RuntimeException()).doNothing().when(readCursorService).markAsRead(lastReadOns);
+
+        readMarkerService.markAsRead(1L, 2L, lastReadOn);
+        readMarkerService.flush();
+        readMarkerService.flush();
+
+        verify(readCursorService, times(2)).markAsRead(lastReadOns);
+        verify(streamService).publishUnreadCounts(Collections.singleton(2L));
+        verifyNoMoreInteractions(readCursorService, streamService);
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        Instant lastReadOn = Instant.now();
+
+        readMarkerService.markAsRead(1L, 2L, lastReadOn);
+        readMarkerService.shutdown();
+
+        verify(readCursorService).markAsRead(Collections.singletonMap(new ReadCursor.Key(1L, 2L), lastReadOn));
+        verify(streamService).publishUnreadCounts(Collections.singleton(2L));
+        verifyNoMoreInteractions(readCursorService, streamService);
+    }
+
+    @Test
+    public void testMarkAsReadForFullBuffer() {
+        Instant lastReadOn = Instant.now();
+
+        for (long conversationId = 0; conversationId < 1000; conversationId++) {
+            readMarkerService.markAsRead(conversationId, 2L, lastReadOn);
+        }
+
+        verify(readCursorService, timeout(1000)).markAsRead(anyMap());
+        verify(streamService, timeout(1000)).publishUnreadCounts(Collections.singleton(2L));
+        verifyNoMoreInteractions(readCursorService, streamService);
+    }
+
+    @Test
+    public void testFlushForNothingPending() {
+        readMarkerService.flush();
+
+        verifyZeroInteractions(readCursorService, streamService);
+    }
+}
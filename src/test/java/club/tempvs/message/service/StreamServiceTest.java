@@ -0,0 +1,134 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.bus.impl.LocalEventBus;
+import club.tempvs.message.dto.StreamEventDto;
+import club.tempvs.message.holder.UserHolder;
+import club.tempvs.message.model.User;
+import club.tempvs.message.service.impl.StreamServiceImpl;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamServiceTest {
+
+    private StreamServiceImpl streamService;
+    private ExecutorService dispatcher;
+
+    @Mock
+    private User user;
+    @Mock
+    private UserHolder userHolder;
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    @Before
+    public void setup() {
+        this.dispatcher = Executors.newSingleThreadExecutor();
+        this.streamService = new StreamServiceImpl(userHolder, unreadCounterService, new LocalEventBus(), dispatcher, dispatcher);
+    }
+
+    @After
+    public void cleanup() {
+        streamService.shutdown();
+    }
+
+    @Test
+    public void testSubscribe() {
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(1L);
+
+        SseEmitter result = streamService.subscribe();
+
+        verify(userHolder).getUser();
+        verify(user).getProfileId();
+        verifyNoMoreInteractions(userHolder, user);
+        verifyZeroInteractions(unreadCounterService);
+
+        assertNotNull("An emitter is returned", result);
+    }
+
+    @Test
+    public void testPublishUnreadCounts() {
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(1L);
+        when(unreadCounterService.getUnreadConversationsCounts(Arrays.asList(1L)))
+                .thenReturn(Collections.singletonMap(1L, 3L));
+
+        streamService.subscribe();
+        streamService.publishUnreadCounts(Arrays.asList(1L, 2L, 1L));
+
+        verify(unreadCounterService, timeout(1000)).getUnreadConversationsCounts(Arrays.asList(1L));
+        verifyNoMoreInteractions(unreadCounterService);
+    }
+
+    @Test
+    public void testPublishUnreadCountsOffTheDispatcher() {
+        StreamServiceImpl streamService = new StreamServiceImpl(
+                userHolder, unreadCounterService, new LocalEventBus(), dispatcher, Executors.newSingleThreadExecutor());
+
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(1L);
+        when(unreadCounterService.getUnreadConversationsCounts(Arrays.asList(1L)))
+                .thenReturn(Collections.singletonMap(1L, 3L));
+
+        streamService.subscribe();
+        dispatcher.shutdown();
+        streamService.publishUnreadCounts(Arrays.asList(1L));
+
+        //the lookup has its own pool, it doesn't depend on the dispatcher
+        verify(unreadCounterService, timeout(1000)).getUnreadConversationsCounts(Arrays.asList(1L));
+        streamService.shutdown();
+    }
+
+    @Test
+    public void testPublishUnreadCountsForNoSubscribers() throws Exception {
+        streamService.publishUnreadCounts(Arrays.asList(1L, 2L));
+        streamService.publish(Arrays.asList(1L, 2L), StreamService.MESSAGE_EVENT, StreamEventDto.ofConversation(3L));
+        awaitDispatcher();
+
+        verifyZeroInteractions(unreadCounterService);
+    }
+
+    @Test
+    public void testAwaitUnreadCount() throws Exception {
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(1L);
+        when(unreadCounterService.getUnreadConversationsCounts(Arrays.asList(1L)))
+                .thenReturn(Collections.singletonMap(1L, 3L));
+
+        CompletableFuture<Long> result = streamService.awaitUnreadCount();
+        streamService.publishUnreadCounts(Arrays.asList(1L, 2L));
+
+        assertEquals("The new count is awaited", Long.valueOf(3L), result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitUnreadCountForCancelledWaiter() throws Exception {
+        when(userHolder.getUser()).thenReturn(user);
+        when(user.getProfileId()).thenReturn(1L);
+
+        streamService.awaitUnreadCount().cancel(false);
+        streamService.publishUnreadCounts(Arrays.asList(1L));
+        awaitDispatcher();
+
+        verifyZeroInteractions(unreadCounterService);
+    }
+
+    private void awaitDispatcher() throws InterruptedException {
+        dispatcher.shutdown();
+        assertTrue("The dispatched tasks have run", dispatcher.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,171 @@
+package club.tempvs.message.service;
+
+import club.tempvs.message.dao.ReadCursorRepository;
+import club.tempvs.message.dao.UnreadCounterRepository;
+import club.tempvs.message.domain.Participant;
+import club.tempvs.message.domain.UnreadCounter;
+import club.tempvs.message.service.impl.UnreadCounterServiceImpl;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UnreadCounterServiceTest {
+
+    private UnreadCounterService unreadCounterService;
+
+    @Mock
+    private Participant participant;
+    @Mock
+    private UnreadCounterRepository unreadCounterRepository;
+    @Mock
+    private ReadCursorRepository readCursorRepository;
+
+    @Before
+    public void setup() {
+        this.unreadCounterService = new UnreadCounterServiceImpl(unreadCounterRepository, readCursorRepository);
+    }
+
+    @Test
+    public void testCreateUnreadCounter() {
+        when(participant.getId()).thenReturn(1L);
+
+        unreadCounterService.createUnreadCounter(participant);
+
+        verify(unreadCounterRepository).insertMissing(Collections.singletonList(1L));
+        verifyNoMoreInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testCreateUnreadCounters() {
+        List<Long> participantIds = Arrays.asList(1L, 2L);
+
+        unreadCounterService.createUnreadCounters(participantIds);
+
+        verify(unreadCounterRepository).insertMissing(participantIds);
+        verifyNoMoreInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testCreateUnreadCountersForEmptyInput() {
+        unreadCounterService.createUnreadCounters(Collections.emptyList());
+
+        verifyZeroInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testGetUnreadConversationsCount() {
+        when(unreadCounterRepository.findById(1L)).thenReturn(Optional.of(new UnreadCounter(1L, 3L)));
+
+        long result = unreadCounterService.getUnreadConversationsCount(1L);
+
+        verify(unreadCounterRepository).findById(1L);
+        verifyNoMoreInteractions(unreadCounterRepository);
+
+        assertEquals("3 is returned as a count of unread conversations", 3L, result);
+    }
+
+    @Test
+    public void testGetUnreadConversationsCountForMissingCounter() {
+        when(unreadCounterRepository.findById(1L)).thenReturn(Optional.empty());
+
+        long result = unreadCounterService.getUnreadConversationsCount(1L);
+
+        verify(unreadCounterRepository).findById(1L);
+        verifyNoMoreInteractions(unreadCounterRepository);
+
+        assertEquals("0 is returned for a participant without a counter", 0L, result);
+    }
+
+    @Test
+    public void testGetUnreadConversationsCounts() {
+        List<Long> participantIds = Arrays.asList(1L, 2L);
+        Map<Long, Long> counts = new HashMap<>();
+        counts.put(1L, 3L);
+        counts.put(2L, 0L);
+
+        when(unreadCounterRepository.findAllById(participantIds)).thenReturn(Arrays.asList(new UnreadCounter(1L, 3L)));
+
+        Map<Long, Long> result = unreadCounterService.getUnreadConversationsCounts(participantIds);
+
+        verify(unreadCounterRepository).findAllById(participantIds);
+        verifyNoMoreInteractions(unreadCounterRepository);
+
+        assertEquals("Counts are returned per participant, 0 for missing counters", counts, result);
+    }
+
+    @Test
+    public void testIncrement() {
+        List<Long> participantIds = Arrays.asList(1L, 2L);
+
+        unreadCounterService.increment(participantIds);
+
+        verify(unreadCounterRepository).increment(participantIds);
+        verifyNoMoreInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testIncrementForEmptyInput() {
+        unreadCounterService.increment(Collections.emptyList());
+
+        verifyZeroInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testDecrement() {
+        unreadCounterService.decrement(1L);
+
+        verify(unreadCounterRepository).decrement(1L);
+        verifyNoMoreInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testTouchInboxes() {
+        List<Long> participantIds = Arrays.asList(1L, 2L);
+
+        unreadCounterService.touchInboxes(participantIds);
+
+        verify(unreadCounterRepository).incrementInboxVersions(participantIds);
+        verifyNoMoreInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testTouchInboxesOfMembers() {
+        List<Long> conversationIds = Arrays.asList(3L);
+
+        unreadCounterService.touchInboxesOfMembers(conversationIds);
+
+        verify(unreadCounterRepository).incrementInboxVersionsOfMembers(conversationIds);
+        verifyNoMoreInteractions(unreadCounterRepository);
+    }
+
+    @Test
+    public void testGetInboxVersion() {
+        when(unreadCounterRepository.findInboxVersion(1L)).thenReturn(7L);
+
+        long result = unreadCounterService.getInboxVersion(1L);
+
+        verify(unreadCounterRepository).findInboxVersion(1L);
+        verifyNoMoreInteractions(unreadCounterRepository);
+
+        assertEquals("The stored inbox version is returned", 7L, result);
+    }
+
+    @Test
+    public void testRebuildUnreadCounters() {
+        unreadCounterService.rebuildUnreadCounters();
+
+        InOrder inOrder = inOrder(readCursorRepository, unreadCounterRepository);
+        inOrder.verify(readCursorRepository).refresh();
+        inOrder.verify(unreadCounterRepository).insertMissing();
+        inOrder.verify(unreadCounterRepository).recount();
+        verifyNoMoreInteractions(readCursorRepository, unreadCounterRepository);
+    }
+}
@@ -1,5 +1,6 @@
 package club.tempvs.message.util;
 
+import club.tempvs.message.domain.Conversation;
 import club.tempvs.message.domain.Message;
 import club.tempvs.message.util.impl.LocaleHelperImpl;
 import org.junit.Assert;
@@ -11,6 +12,8 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 import static org.mockito.Mockito.*;
@@ -18,23 +21,23 @@ import static org.mockito.Mockito.*;
 @RunWith(MockitoJUnitRunner.class)
 public class LocaleHelperTest {
 
+    private static final String CODE = "conversation.rename";
+    private static final String TEMPLATE = "renamed the conversation to \"{0}\"";
+
     private LocaleHelper localeHelper;
 
     @Mock
     private Message originalMessage;
 
     @Mock
-    private Message translatedMessage;
+    private Conversation conversation;
 
     @Mock
     private MessageSource messageSource;
 
-    @Mock
-    private ObjectFactory objectFactory;
-
     @Before
     public void setup() {
-        localeHelper = new LocaleHelperImpl(messageSource, objectFactory);
+        localeHelper = new LocaleHelperImpl(messageSource);
     }
 
     @Test
@@ -49,31 +52,58 @@ public class LocaleHelperTest {
         Assert.assertEquals("The original message is returned", originalMessage, result);
     }
 
-
     @Test
     public void testTranslateSystemMessageForSystemMessage() {
-        String code = "message.code";
-        String systemArgsString = "arg1,arg2";
-        String[] args = new String[]{"arg1", "arg2"};
         Locale locale = LocaleContextHolder.getLocale();
-        String translatedMessageString = "translated message";
 
         when(originalMessage.getIsSystem()).thenReturn(true);
-        when(originalMessage.getText()).thenReturn(code);
-        when(originalMessage.getSystemArgs()).thenReturn(systemArgsString);
-        when(objectFactory.getInstance(Message.class, originalMessage)).thenReturn(translatedMessage);
-        when(messageSource.getMessage(code, args, code, locale)).thenReturn(translatedMessageString);
+        when(originalMessage.getText()).thenReturn(CODE);
+        when(originalMessage.getSystemArgs()).thenReturn("new name");
+        when(messageSource.getMessage(CODE, null, CODE, locale)).thenReturn(TEMPLATE);
 
         Message result = localeHelper.translateMessageIfSystem(originalMessage);
 
-        verify(originalMessage).getIsSystem();
-        verify(originalMessage).getText();
-        verify(originalMessage).getSystemArgs();
-        verify(objectFactory).getInstance(Message.class, originalMessage);
-        verify(messageSource).getMessage(code, args, code, locale);
-        verify(translatedMessage).setText(translatedMessageString);
-        verifyNoMoreInteractions(translatedMessage, messageSource);
-
-        Assert.assertEquals("The translated message is returned", translatedMessage, result);
+        verify(messageSource).getMessage(CODE, null, CODE, locale);
+        verifyNoMoreInteractions(messageSource);
+
+        Assert.assertNotSame("A copy of the message is returned", originalMessage, result);
+        Assert.assertEquals("The copy is translated", "renamed the conversation to \"new name\"", result.getText());
+    }
+
+    @Test
+    public void testTranslateMessagesIfSystem() {
+        Locale locale = LocaleContextHolder.getLocale();
+        List<Message> messages = Arrays.asList(originalMessage, originalMessage, originalMessage);
+
+        when(originalMessage.getIsSystem()).thenReturn(true);
+        when(originalMessage.getText()).thenReturn(CODE);
+        when(originalMessage.getSystemArgs()).thenReturn("a,b");
+        when(messageSource.getMessage(CODE, null, CODE, locale)).thenReturn(TEMPLATE);
+
+        List<Message> result = localeHelper.translateMessagesIfSystem(messages);
+
+        verify(messageSource).getMessage(CODE, null, CODE, locale);
+        verifyNoMoreInteractions(messageSource);
+
+        Assert.assertEquals("All messages are translated", 3, result.size());
+        Assert.assertEquals("The first argument is used", "renamed the conversation to \"a\"", result.get(2).getText());
+    }
+
+    @Test
+    public void testTranslateSystemMessageForConversation() {
+        Locale locale = LocaleContextHolder.getLocale();
+        String code = "conversation.drop.name";
+        String template = "dropped the conversation name";
+
+        when(conversation.getLastMessageText()).thenReturn(code);
+        when(conversation.getLastMessageSystem()).thenReturn(true);
+        when(messageSource.getMessage(code, null, code, locale)).thenReturn(template);
+
+        String result = localeHelper.translateMessageIfSystem(conversation);
+
+        verify(messageSource).getMessage(code, null, code, locale);
+        verifyNoMoreInteractions(messageSource);
+
+        Assert.assertEquals("The last message is translated", template, result);
     }
 }
@@ -0,0 +1,40 @@
+package club.tempvs.message.util;
+
+import club.tempvs.message.domain.Message;
+import club.tempvs.message.util.impl.ObjectFactoryImpl;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectFactoryTest {
+
+    private ObjectFactory objectFactory;
+
+    @Before
+    public void setup() {
+        this.objectFactory = new ObjectFactoryImpl();
+    }
+
+    @Test
+    public void testGetInstance() {
+        Message result = objectFactory.getInstance(Message.class);
+
+        assertNotNull("A new message is returned", result);
+        assertNotSame("Each call creates a new instance", result, objectFactory.getInstance(Message.class));
+    }
+
+    @Test
+    public void testGetInstanceWithArguments() {
+        Message message = new Message();
+        message.setText("text");
+
+        Message result = objectFactory.getInstance(Message.class, message);
+
+        assertEquals("The copy constructor is used", "text", result.getText());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testGetInstanceForMissingConstructor() {
+        objectFactory.getInstance(Message.class, "text");
+    }
+}
@@ -0,0 +1,59 @@
+package club.tempvs.message.util;
+
+import club.tempvs.message.model.User;
+import club.tempvs.message.util.impl.UserInfoParserImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+public class UserInfoParserTest {
+
+    private static final String USER_INFO = "{\"profileId\":1,\"lang\":\"en\",\"timezone\":\"Europe/Minsk\"}";
+
+    private UserInfoParser userInfoParser;
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.userInfoParser = new UserInfoParserImpl(new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    public void testParse() {
+        User result = userInfoParser.parse(USER_INFO);
+
+        assertEquals("Profile id is parsed", Long.valueOf(1L), result.getProfileId());
+        assertEquals("Locale is parsed", new Locale("en"), result.getLocale());
+        assertEquals("Timezone is parsed", "Europe/Minsk", result.getTimezone());
+    }
+
+    @Test
+    public void testParseForRepeatedHeader() {
+        User firstResult = userInfoParser.parse(USER_INFO);
+        User secondResult = userInfoParser.parse(USER_INFO);
+
+        assertSame("The cached user is returned", firstResult, secondResult);
+        assertEquals("A cache miss is recorded", 1.0, cacheGets("miss"), 0.0);
+        assertEquals("A cache hit is recorded", 1.0, cacheGets("hit"), 0.0);
+    }
+
+    @Test
+    public void testParseForMalformedHeader() {
+        assertNull("Null is returned for a malformed header", userInfoParser.parse("{not json"));
+    }
+
+    @Test
+    public void testParseForMissingHeader() {
+        assertNull("Null is returned for a missing header", userInfoParser.parse(null));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).functionCounter().count();
+    }
+}